@@ -0,0 +1,67 @@
+package com.hoaxify.benchmark;
+
+import com.hoaxify.configuration.CachingAuthenticationProvider;
+import com.hoaxify.user.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+// Basic auth con y sin hoaxify.auth-cache-enabled, con el mismo BCrypt que usa la aplicacion
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthenticationBenchmark {
+
+    DaoAuthenticationProvider daoProvider;
+
+    CachingAuthenticationProvider cachingProvider;
+
+    @Setup
+    public void setup() {
+        PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+        User user = BenchmarkData.createUser(1);
+        user.setPassword(passwordEncoder.encode("P4ssword"));
+        UserDetailsService userDetailsService = username -> user;
+
+        daoProvider = new DaoAuthenticationProvider();
+        daoProvider.setUserDetailsService(userDetailsService);
+        daoProvider.setPasswordEncoder(passwordEncoder);
+
+        cachingProvider = new CachingAuthenticationProvider(userDetailsService, passwordEncoder, 60, 10000);
+    }
+
+
+    @Benchmark
+    public Authentication uncached() {
+        return daoProvider.authenticate(token());
+    }
+
+
+    @Benchmark
+    public Authentication cached() {
+        return cachingProvider.authenticate(token());
+    }
+
+
+    private UsernamePasswordAuthenticationToken token() {
+        return new UsernamePasswordAuthenticationToken("user1", "P4ssword");
+    }
+}
@@ -0,0 +1,58 @@
+package com.hoaxify.benchmark;
+
+import com.hoaxify.file.FileAttachment;
+import com.hoaxify.hoax.FeedEntry;
+import com.hoaxify.hoax.Hoax;
+import com.hoaxify.user.User;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+// Datos de prueba compartidos por los benchmarks, parecidos a un feed real
+public class BenchmarkData {
+
+    public static User createUser(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        user.setDisplayName("display" + id);
+        user.setPassword("P4ssword");
+        user.setImage("profile-image-" + id + ".png");
+        return user;
+    }
+
+    // uno de cada tres hoaxes tiene adjunto
+    public static List<Hoax> createHoaxes(int count) {
+        List<Hoax> hoaxes = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Hoax hoax = new Hoax();
+            hoax.setId((long) i);
+            hoax.setContent("benchmark content for hoax number " + i);
+            hoax.setTimestamp(new Date());
+            hoax.setUser(createUser(i % 5));
+            if (i % 3 == 0) {
+                FileAttachment fileAttachment = new FileAttachment();
+                fileAttachment.setId(i);
+                fileAttachment.setName("attachment" + i);
+                fileAttachment.setFileType("image/png");
+                fileAttachment.setDate(new Date());
+                hoax.setAttachment(fileAttachment);
+            }
+            hoaxes.add(hoax);
+        }
+        return hoaxes;
+    }
+
+    // las filas de feed_entry que leen los endpoints del feed, con los mismos datos que createHoaxes
+    public static List<FeedEntry> createFeedEntries(int count) {
+        List<FeedEntry> entries = new ArrayList<>(count);
+        for (Hoax hoax : createHoaxes(count)) {
+            FeedEntry entry = new FeedEntry(hoax);
+            entry.setId(hoax.getId());
+            entry.setHoax(null);
+            entries.add(entry);
+        }
+        return entries;
+    }
+}
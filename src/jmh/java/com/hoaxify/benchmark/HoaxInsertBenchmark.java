@@ -0,0 +1,126 @@
+package com.hoaxify.benchmark;
+
+import com.hoaxify.file.FileAttachment;
+import com.hoaxify.hoax.Hoax;
+import com.hoaxify.shared.PooledSequenceGenerator;
+import com.hoaxify.user.User;
+import org.h2.tools.Server;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Inserts de hoaxes por segundo con Hibernate, en transacciones de INSERTS_PER_TRANSACTION. H2 corre como servidor
+// TCP en localhost para que cada llamada a la secuencia y cada insert paguen un round trip, como con una base real.
+// allocationSize=1 y jdbcBatchSize=0 es como estaba antes (un valor de secuencia por insert, sin lotes JDBC),
+// 50/50 es la configuracion de application.yml
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+// Hibernate tarda en calentar, con menos iteraciones el resultado sigue subiendo durante la medicion
+@Warmup(iterations = 15, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HoaxInsertBenchmark {
+
+    private static final int INSERTS_PER_TRANSACTION = 100;
+
+    @Param({"1", "50"})
+    int allocationSize;
+
+    @Param({"0", "50"})
+    int jdbcBatchSize;
+
+    Server server;
+
+    StandardServiceRegistry registry;
+
+    SessionFactory sessionFactory;
+
+    User user;
+
+    @Setup
+    public void setup() throws SQLException {
+        // sin Spring Boot el logging queda en DEBUG y mide los logs de Hibernate
+        LoggingSystem.get(getClass().getClassLoader()).setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+        server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.URL, "jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:insert-benchmark")
+                .applySetting(AvailableSettings.USER, "sa")
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "create")
+                .applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, jdbcBatchSize)
+                .applySetting(AvailableSettings.ORDER_INSERTS, true)
+                .applySetting(AvailableSettings.JPA_VALIDATION_MODE, "none")
+                .applySetting(PooledSequenceGenerator.ALLOCATION_SIZE, allocationSize)
+                .build();
+        sessionFactory = new MetadataSources(registry)
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(Hoax.class)
+                .addAnnotatedClass(FileAttachment.class)
+                .buildMetadata()
+                .buildSessionFactory();
+
+        user = BenchmarkData.createUser(1);
+        user.setId(null);
+        inTransaction(session -> session.persist(user));
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteHoaxes() {
+        inTransaction(session -> session.createQuery("delete from Hoax").executeUpdate());
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+        StandardServiceRegistryBuilder.destroy(registry);
+        server.stop();
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(INSERTS_PER_TRANSACTION)
+    public void insertHoaxes() {
+        inTransaction(session -> {
+            for (int i = 0; i < INSERTS_PER_TRANSACTION; i++) {
+                Hoax hoax = new Hoax();
+                hoax.setContent("benchmark content for hoax number " + i);
+                hoax.setTimestamp(new Date());
+                hoax.setUser(user);
+                session.persist(hoax);
+            }
+        });
+    }
+
+
+    private void inTransaction(Consumer<Session> work) {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            work.accept(session);
+            session.getTransaction().commit();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.hoaxify.benchmark;
+
+import com.hoaxify.hoax.FeedEntry;
+import com.hoaxify.hoax.Hoax;
+import com.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.user.vm.UserVM;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HoaxVMMappingBenchmark {
+
+    @Param({"10", "100"})
+    int pageSize;
+
+    Hoax hoax;
+
+    Page<Hoax> page;
+
+    FeedEntry entry;
+
+    Page<FeedEntry> feedPage;
+
+    @Setup
+    public void setup() {
+        List<Hoax> hoaxes = BenchmarkData.createHoaxes(pageSize);
+        // el tercero tiene adjunto, es el caso mas caro
+        hoax = hoaxes.get(2);
+        page = new PageImpl<>(hoaxes, PageRequest.of(0, pageSize), 1000);
+
+        // los feeds leen de feed_entry, el mapeo que corre en cada request es HoaxVM(FeedEntry)
+        List<FeedEntry> entries = BenchmarkData.createFeedEntries(pageSize);
+        entry = entries.get(2);
+        feedPage = new PageImpl<>(entries, PageRequest.of(0, pageSize), 1000);
+    }
+
+
+    @Benchmark
+    public HoaxVM hoaxVM() {
+        return new HoaxVM(hoax);
+    }
+
+
+    @Benchmark
+    public UserVM userVM() {
+        return new UserVM(hoax.getUser());
+    }
+
+
+    @Benchmark
+    public Page<HoaxVM> pageMap() {
+        return page.map(HoaxVM::new);
+    }
+
+
+    @Benchmark
+    public HoaxVM feedEntryHoaxVM() {
+        return new HoaxVM(entry);
+    }
+
+
+    @Benchmark
+    public Page<HoaxVM> feedEntryPageMap() {
+        return feedPage.map(HoaxVM::new);
+    }
+}
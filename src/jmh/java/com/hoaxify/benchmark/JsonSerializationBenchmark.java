@@ -0,0 +1,84 @@
+package com.hoaxify.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hoaxify.error.ApiError;
+import com.hoaxify.hoax.vm.HoaxVM;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    ObjectMapper objectMapper;
+
+    ApiError apiError;
+
+    @Setup
+    public void setup() {
+        // misma configuracion base que usa Spring MVC
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        apiError = new ApiError(400, "Validation error", "/api/1.0/users");
+        Map<String, String> validationErrors = new HashMap<>();
+        validationErrors.put("username", "Username cannot be null");
+        validationErrors.put("displayName", "It must have minimum 4 and maximum 255 characters");
+        validationErrors.put("password", "Password must have at least one uppercase, one lowercase letter and one number");
+        apiError.setValidationErrors(validationErrors);
+    }
+
+
+    @Benchmark
+    public byte[] hoaxPage(HoaxPage hoaxPage) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(hoaxPage.page);
+    }
+
+
+    @Benchmark
+    public byte[] apiError() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(apiError);
+    }
+
+
+    // el tamano de pagina solo aplica a hoaxPage
+    @State(Scope.Benchmark)
+    public static class HoaxPage {
+
+        @Param({"10", "100"})
+        int pageSize;
+
+        Page<HoaxVM> page;
+
+        @Setup
+        public void setup() {
+            List<HoaxVM> hoaxes = BenchmarkData.createHoaxes(pageSize).stream()
+                    .map(HoaxVM::new)
+                    .collect(Collectors.toList());
+            page = new PageImpl<>(hoaxes, PageRequest.of(0, pageSize), 1000);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.hoaxify.benchmark;
+
+import com.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.file.BlobStore;
+import com.hoaxify.file.FileService;
+import com.hoaxify.file.InMemoryBlobStore;
+import com.hoaxify.file.StoredFileService;
+import com.hoaxify.shared.Base64Image;
+import com.hoaxify.shared.ProfileImageValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProfileImageValidatorBenchmark {
+
+    FileService fileService;
+
+    ProfileImageValidator validator;
+
+    Base64Image pngImage;
+
+    Base64Image jpgImage;
+
+    @Setup
+    public void setup() throws IOException {
+        AppConfiguration appConfiguration = new AppConfiguration();
+        appConfiguration.setUploadPath("uploads-test");
+        BlobStore blobStore = new InMemoryBlobStore();
+        fileService = new FileService(appConfiguration, null, null, new StoredFileService(appConfiguration, blobStore), blobStore,
+                new SimpleMeterRegistry());
+
+        validator = new ProfileImageValidator();
+        ReflectionTestUtils.setField(validator, "fileService", fileService);
+
+        pngImage = readAsBase64("profile.png");
+        jpgImage = readAsBase64("test-jpg.jpg");
+    }
+
+    @TearDown
+    public void tearDown() {
+        fileService.shutdownCleanupExecutor();
+    }
+
+
+    @Benchmark
+    public boolean png() {
+        return validator.isValid(pngImage, null);
+    }
+
+
+    @Benchmark
+    public boolean jpg() {
+        return validator.isValid(jpgImage, null);
+    }
+
+
+    private Base64Image readAsBase64(String resource) throws IOException {
+        return new Base64Image(Base64.getEncoder().encodeToString(FileUtils.readFileToByteArray(new ClassPathResource(resource).getFile())));
+    }
+}
@@ -0,0 +1,48 @@
+package com.hoaxify.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latencias (en microsegundos) y errores de un endpoint durante la medicion
+public class EndpointStats {
+
+    private final String name;
+
+    private final Histogram latencies = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+
+    private final LongAdder errors = new LongAdder();
+
+    public EndpointStats(String name) {
+        this.name = name;
+    }
+
+    public void record(long startNanos, boolean success) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        latencies.recordValue(Math.min(micros, latencies.getHighestTrackableValue()));
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    public Map<String, Object> toReport(long durationMillis) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("endpoint", name);
+        report.put("requests", latencies.getTotalCount());
+        report.put("errors", errors.sum());
+        report.put("rps", latencies.getTotalCount() * 1000.0 / durationMillis);
+        report.put("p50Ms", percentileMillis(50));
+        report.put("p99Ms", percentileMillis(99));
+        report.put("p999Ms", percentileMillis(99.9));
+        report.put("maxMs", latencies.getMaxValue() / 1000.0);
+        return report;
+    }
+
+    private double percentileMillis(double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,293 @@
+package com.hoaxify.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hoaxify.HoaxifyApplication;
+import com.hoaxify.UserRepository;
+import com.hoaxify.hoax.FeedEntryRepository;
+import com.hoaxify.hoax.Hoax;
+import com.hoaxify.hoax.HoaxRepository;
+import com.hoaxify.user.User;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Levanta HoaxifyApplication en un puerto aleatorio con un dataset grande y le aplica una carga mixta:
+// lectura de feeds, polling de hoaxes nuevos, hoaxes con adjunto y actualizaciones de perfil.
+// Reporta rps y p50/p99/p999 por endpoint en consola y en JSON.
+public class LoadTestRunner {
+
+    private static final String PASSWORD = "P4ssword";
+
+    // usuarios que hacen login y generan la carga
+    private static final int ACTIVE_USERS = 200;
+
+    private final int users = Integer.getInteger("loadtest.users", 2000);
+    private final int hoaxes = Integer.getInteger("loadtest.hoaxes", 50000);
+    private final int threads = Integer.getInteger("loadtest.threads", 32);
+    private final int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 10);
+    private final int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 60);
+    private final String resultFile = System.getProperty("loadtest.result-file", "target/loadtest-result.json");
+    private final String uploadPath = System.getProperty("loadtest.upload-path", "target/loadtest-uploads");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+
+    private final byte[] attachment = Base64.getDecoder().decode(
+            "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg==");
+
+    private volatile boolean measuring;
+
+    private String baseUrl;
+
+    private List<Session> sessions;
+
+    private long newestSeedId;
+
+    public static void main(String[] args) throws Exception {
+        new LoadTestRunner().run();
+    }
+
+    private void run() throws Exception {
+        for (String endpoint : new String[]{"feed", "userFeed", "newCount", "upload", "postHoax", "updateProfile"}) {
+            stats.put(endpoint, new EndpointStats(endpoint));
+        }
+
+        // como argumento para que pise el perfil dev de application.yml y su CommandLineRunner
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(HoaxifyApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:hoaxify-loadtest",
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=500",
+                        "spring.jpa.properties.hibernate.order_inserts=true",
+                        "hoaxify.upload-path=" + uploadPath,
+                        "logging.level.root=WARN")
+                .run("--spring.profiles.active=loadtest");
+        try (CloseableHttpClient client = HttpClients.custom()
+                .setMaxConnTotal(threads * 2)
+                .setMaxConnPerRoute(threads * 2)
+                .build()) {
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            seed(context);
+            sessions = login(client);
+            drive(client);
+            report();
+        } finally {
+            context.close();
+        }
+    }
+
+    private void seed(ConfigurableApplicationContext context) {
+        long started = System.currentTimeMillis();
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        HoaxRepository hoaxRepository = context.getBean(HoaxRepository.class);
+        // el mismo hash para todos, BCrypt por usuario haria el seed eterno
+        String passwordHash = context.getBean(PasswordEncoder.class).encode(PASSWORD);
+
+        List<User> seededUsers = new ArrayList<>(users);
+        for (int i = 1; i <= users; i++) {
+            User user = new User();
+            user.setUsername("user" + i);
+            user.setDisplayName("display" + i);
+            user.setPassword(passwordHash);
+            seededUsers.add(user);
+        }
+        seededUsers = userRepository.saveAll(seededUsers);
+
+        List<Hoax> batch = new ArrayList<>();
+        for (int i = 1; i <= hoaxes; i++) {
+            Hoax hoax = new Hoax();
+            hoax.setContent("load test hoax number " + i + " with some text to make it look real");
+            hoax.setTimestamp(new Date());
+            hoax.setUser(seededUsers.get(ThreadLocalRandom.current().nextInt(seededUsers.size())));
+            batch.add(hoax);
+            if (batch.size() == 1000 || i == hoaxes) {
+                for (Hoax saved : hoaxRepository.saveAll(batch)) {
+                    newestSeedId = Math.max(newestSeedId, saved.getId());
+                }
+                batch.clear();
+            }
+        }
+        // saveAll solo escribe hoax y el backfill de la proyeccion ya corrio al arrancar, sin esto los feeds leen vacio
+        context.getBean(FeedEntryRepository.class).backfill();
+        System.out.printf("Seeded %d users and %d hoaxes in %d ms%n", users, hoaxes, System.currentTimeMillis() - started);
+    }
+
+    private List<Session> login(CloseableHttpClient client) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Session>> futures = new ArrayList<>();
+            for (int i = 1; i <= Math.min(ACTIVE_USERS, users); i++) {
+                String username = "user" + i;
+                futures.add(executor.submit(() -> {
+                    HttpPost post = new HttpPost(baseUrl + "/api/1.0/login");
+                    String credentials = Base64.getEncoder().encodeToString((username + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+                    post.setHeader(HttpHeaders.AUTHORIZATION, "Basic " + credentials);
+                    JsonNode body = objectMapper.readTree(execute(client, post));
+                    // sin token (hoaxify.token-auth-enabled=false) se sigue usando Basic
+                    String authorization = body.hasNonNull("token")
+                            ? "Bearer " + body.get("token").asText()
+                            : "Basic " + credentials;
+                    return new Session(body.get("id").asLong(), authorization);
+                }));
+            }
+            List<Session> result = new ArrayList<>();
+            for (Future<Session> future : futures) {
+                result.add(future.get());
+            }
+            return result;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void drive(CloseableHttpClient client) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds + durationSeconds);
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                while (System.nanoTime() < end) {
+                    runOperation(client);
+                }
+            });
+        }
+        System.out.printf("Warming up for %d s with %d threads%n", warmupSeconds, threads);
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        measuring = true;
+        System.out.printf("Measuring for %d s%n", durationSeconds);
+        executor.shutdown();
+        executor.awaitTermination(durationSeconds + 60, TimeUnit.SECONDS);
+    }
+
+    // mezcla: 40% feed, 15% feed de usuario, 30% polling de nuevos, 10% hoax con adjunto, 5% perfil
+    private void runOperation(CloseableHttpClient client) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Session session = sessions.get(random.nextInt(sessions.size()));
+        int roll = random.nextInt(100);
+        if (roll < 40) {
+            call(client, "feed", new HttpGet(baseUrl + "/api/1.0/hoaxes?page=0&size=10"), session);
+        } else if (roll < 55) {
+            String username = "user" + (1 + random.nextInt(users));
+            call(client, "userFeed", new HttpGet(baseUrl + "/api/1.0/users/" + username + "/hoaxes?page=0&size=10"), session);
+        } else if (roll < 85) {
+            long id = newestSeedId - random.nextInt(100);
+            call(client, "newCount", new HttpGet(baseUrl + "/api/1.0/hoaxes/" + id + "?direction=after&count=true"), session);
+        } else if (roll < 95) {
+            postHoaxWithAttachment(client, session);
+        } else {
+            HttpPut put = new HttpPut(baseUrl + "/api/1.0/users/" + session.id);
+            put.setEntity(new StringEntity("{\"displayName\":\"display-" + random.nextInt(1000) + "\"}", ContentType.APPLICATION_JSON));
+            call(client, "updateProfile", put, session);
+        }
+    }
+
+    private void postHoaxWithAttachment(CloseableHttpClient client, Session session) {
+        HttpPost upload = new HttpPost(baseUrl + "/api/1.0/hoaxes/upload");
+        upload.setEntity(MultipartEntityBuilder.create()
+                .addBinaryBody("file", attachment, ContentType.IMAGE_PNG, "image.png")
+                .build());
+        String uploaded = call(client, "upload", upload, session);
+        if (uploaded == null) {
+            return;
+        }
+        try {
+            long attachmentId = objectMapper.readTree(uploaded).get("id").asLong();
+            HttpPost post = new HttpPost(baseUrl + "/api/1.0/hoaxes");
+            post.setEntity(new StringEntity("{\"content\":\"load test hoax with attachment\",\"attachment\":{\"id\":" + attachmentId + "}}",
+                    ContentType.APPLICATION_JSON));
+            call(client, "postHoax", post, session);
+        } catch (IOException e) {
+            stats.get("postHoax").record(System.nanoTime(), false);
+        }
+    }
+
+    // devuelve el body o null si fallo
+    private String call(CloseableHttpClient client, String endpoint, HttpUriRequest request, Session session) {
+        request.setHeader(HttpHeaders.AUTHORIZATION, session.authorization);
+        long started = System.nanoTime();
+        String body = null;
+        try {
+            body = execute(client, request);
+        } catch (IOException e) {
+            // cuenta como error
+        }
+        if (measuring) {
+            stats.get(endpoint).record(started, body != null);
+        }
+        return body;
+    }
+
+    private String execute(CloseableHttpClient client, HttpUriRequest request) throws IOException {
+        try (CloseableHttpResponse response = client.execute(request)) {
+            String body = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity());
+            if (response.getStatusLine().getStatusCode() >= 400) {
+                throw new IOException(request.getMethod() + " " + request.getURI() + " -> " + response.getStatusLine());
+            }
+            return body;
+        }
+    }
+
+    private void report() throws IOException {
+        long durationMillis = TimeUnit.SECONDS.toMillis(durationSeconds);
+        List<Map<String, Object>> endpoints = stats.values().stream()
+                .map(endpointStats -> endpointStats.toReport(durationMillis))
+                .collect(Collectors.toList());
+
+        System.out.printf("%-14s %9s %7s %9s %9s %9s %9s %9s%n", "endpoint", "requests", "errors", "rps", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Map<String, Object> endpoint : endpoints) {
+            System.out.printf("%-14s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n", endpoint.get("endpoint"), endpoint.get("requests"),
+                    endpoint.get("errors"), endpoint.get("rps"), endpoint.get("p50Ms"), endpoint.get("p99Ms"),
+                    endpoint.get("p999Ms"), endpoint.get("maxMs"));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("users", users);
+        result.put("hoaxes", hoaxes);
+        result.put("threads", threads);
+        result.put("durationSeconds", durationSeconds);
+        result.put("endpoints", endpoints);
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(new File(resultFile), result);
+        System.out.println("Load test result is saved to " + resultFile);
+    }
+
+    private static class Session {
+
+        final long id;
+
+        final String authorization;
+
+        Session(long id, String authorization) {
+            this.id = id;
+            this.authorization = authorization;
+        }
+    }
+}
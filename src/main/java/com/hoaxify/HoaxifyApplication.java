@@ -5,12 +5,16 @@ import com.hoaxify.user.UserService;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
 
 import java.util.stream.IntStream;
 
 @SpringBootApplication
+// el cache envuelve a la transaccion: los @CacheEvict de UserService corren despues del commit
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
 public class HoaxifyApplication {
 
     public static void main(String[] args) {
@@ -1,9 +1,14 @@
 package com.hoaxify;
 
 import com.hoaxify.user.User;
+import com.hoaxify.user.UserSnapshot;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -11,5 +16,19 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     User findByUsername(String username);
 
+    // cache acotado con TTL (spring.cache.caffeine.spec) de copias inmutables, nunca la entidad administrada;
+    // UserService lo invalida en save y update
+    @Cacheable(cacheNames = "users", unless = "#result == null")
+    @Query("select new com.hoaxify.user.UserSnapshot(u.id, u.username, u.password, u.displayName, u.image) " +
+            "from User u where u.username = :username")
+    UserSnapshot findSnapshotByUsername(@Param("username") String username);
+
     Page<User> findByUsernameNot(String username, Pageable page); //obtiene todos, menos el username
+
+    // sin count(*), para el listado con ?totals=false
+    Slice<User> findSliceBy(Pageable page);
+
+    Slice<User> findSliceByUsernameNot(String username, Pageable page);
+
+    long countByImage(String image);
 }
@@ -4,6 +4,10 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "hoaxify")
@@ -13,6 +17,106 @@ public class AppConfiguration {
     private String profileImagesFolder = "profile";
     private String attachmentFolder = "attachments";
 
+    // implementacion de BlobStore: "local" (disco, carpetas repartidas por hash) o "memory" (tests)
+    private String blobStore = "local";
+
+    // maximo de bytes de un adjunto, se controla mientras se escribe a disco
+    private long maxAttachmentSize = 10 * 1024 * 1024;
+
+    // nombra adjuntos e imagenes de perfil por el SHA-256 del contenido, los duplicados comparten archivo
+    private boolean contentAddressedStorage = false;
+
+    // escrituras de adjuntos e imagenes de perfil fuera del hilo del request (ver FileIoExecutor)
+    private boolean fileIoAsync = false;
+
+    private boolean fileIoVirtualThreads = true;
+
+    private int fileIoThreads = 16;
+
+    private int fileIoQueueCapacity = 200;
+
+    // tamanos (lado en px) de las versiones chicas de las imagenes de perfil, se generan en segundo plano
+    private List<Integer> profileImageSizes = new ArrayList<>(Arrays.asList(64, 128, 256));
+
+    private boolean profileImageVariantsAsync = true;
+
+    private int profileImageVariantThreads = 2;
+
+    private int profileImageVariantQueueCapacity = 1000;
+
+    // pixeles (ancho x alto) maximos de una imagen de perfil para generar variantes, 40M son unos 160MB en ARGB
+    private long profileImageMaxPixels = 40_000_000;
+
+    // limpieza de adjuntos huerfanos: tamano de lote, hilos para borrar archivos y presupuesto por corrida
+    private int cleanupBatchSize = 500;
+
+    private int cleanupThreads = 4;
+
+    private long cleanupMaxFilesPerRun = 50000;
+
+    private long cleanupMaxDurationMillis = 5 * 60 * 1000;
+
+    // cache de metadatos (tamano, fecha, etag) de los archivos servidos en /images/**
+    private long storedFileCacheMaxSize = 10000;
+
+    private long storedFileCacheTtlSeconds = 60;
+
+    // tiempo maximo (ms) que una conexion SSE del feed queda abierta
+    private long hoaxStreamTimeout = 30 * 60 * 1000;
+
+    // hilos que mandan los eventos SSE y eventos sin leer que se le aguantan a un cliente antes de cortarlo
+    private int hoaxStreamThreads = 4;
+
+    private int hoaxStreamQueueCapacity = 10000;
+
+    private int hoaxStreamMaxPendingEvents = 100;
+
+    // hoaxes mas nuevos que se guardan en memoria por feed (0 lo desactiva)
+    private int hotFeedSize = 100;
+
+    // cantidad maxima de feeds de usuario en memoria, al llenarse salen los menos usados
+    private int hotFeedMaxUsers = 1000;
+
+    // contador del badge de hoaxes nuevos (ver NewHoaxCounter): ids guardados por feed y feeds de usuario.
+    // En true se cuenta exacto con HotFeedCache o con count(*) en la base
+    private boolean newHoaxCountExact = false;
+
+    private int newHoaxCounterSize = 500;
+
+    private int newHoaxCounterMaxUsers = 1000;
+
+    // HoaxService.save encola y un hilo inserta en lotes JDBC (ver HoaxWriteBehind), para picos de trafico
+    private boolean hoaxWriteBehind = false;
+
+    private int hoaxWriteBehindBatchSize = 100;
+
+    private long hoaxWriteBehindMaxLatencyMillis = 50;
+
+    private int hoaxWriteBehindQueueCapacity = 10000;
+
+    // bloque de ids por llamada a la secuencia (ver PooledSequenceGenerator), el valor esta en application.yml
+    private int idAllocationSize;
+
+    // cache de credenciales ya verificadas con BCrypt (opt-in)
+    private boolean authCacheEnabled = false;
+
+    private long authCacheTtlSeconds = 60;
+
+    private long authCacheMaxSize = 10000;
+
+    // /login entrega un token firmado que reemplaza a Basic en el resto de requests
+    private boolean tokenAuthEnabled = true;
+
+    private String tokenSecret;
+
+    // en true no arranca si falta tokenSecret (con tokenAuthEnabled), en false solo se loguea un warning
+    private boolean tokenSecretRequired = false;
+
+    private long tokenTtlSeconds = 60 * 60;
+
+    // en false solo /login acepta Basic, para clientes viejos se deja en true
+    private boolean basicAuthEnabled = true;
+
     public String getFullProfileImagePath() {
         return this.uploadPath + "/" + this.profileImagesFolder;
     }
@@ -1,7 +1,7 @@
 package com.hoaxify.configuration;
 
 import com.hoaxify.UserRepository;
-import com.hoaxify.user.User;
+import com.hoaxify.user.UserSnapshot;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -17,10 +17,11 @@ public class AuthUserService implements UserDetailsService {
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username);
+        UserSnapshot user = userRepository.findSnapshotByUsername(username);
         if (user == null){
             throw new UsernameNotFoundException("User not found");
         }
-        return user;
+        // un principal por request, el snapshot del cache no se comparte
+        return user.toUser();
     }
 }
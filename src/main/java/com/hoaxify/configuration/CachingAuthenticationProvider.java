@@ -0,0 +1,103 @@
+package com.hoaxify.configuration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hoaxify.user.UserUpdatedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+// Recuerda por poco tiempo las credenciales que ya pasaron BCrypt, asi no se verifica el hash en cada request.
+// La clave es un HMAC (con secreto aleatorio por proceso) de username:password, nunca el password en claro.
+public class CachingAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final Cache<String, VerifiedCredentials> verifiedCredentials;
+
+    private final SecretKeySpec secretKey;
+
+    public CachingAuthenticationProvider(UserDetailsService userDetailsService, PasswordEncoder passwordEncoder,
+                                         long ttlSeconds, long maxSize) {
+        setUserDetailsService(userDetailsService);
+        setPasswordEncoder(passwordEncoder);
+        this.verifiedCredentials = Caffeine.newBuilder()
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.secretKey = new SecretKeySpec(secret, HMAC_ALGORITHM);
+    }
+
+    @Override
+    protected void additionalAuthenticationChecks(UserDetails userDetails,
+                                                  UsernamePasswordAuthenticationToken authentication) {
+        if (authentication.getCredentials() == null) {
+            super.additionalAuthenticationChecks(userDetails, authentication);
+            return;
+        }
+        String key = keyOf(userDetails.getUsername(), authentication.getCredentials().toString());
+        VerifiedCredentials verified = verifiedCredentials.getIfPresent(key);
+        // si el hash guardado cambio (nuevo password) la entrada ya no sirve
+        if (verified != null && constantTimeEquals(verified.getPasswordHash(), userDetails.getPassword())) {
+            return;
+        }
+        super.additionalAuthenticationChecks(userDetails, authentication);
+        verifiedCredentials.put(key, new VerifiedCredentials(userDetails.getUsername(), userDetails.getPassword()));
+    }
+
+    @EventListener
+    public void onUserUpdated(UserUpdatedEvent event) {
+        invalidate(event.getUser().getUsername());
+    }
+
+    public void invalidate(String username) {
+        verifiedCredentials.asMap().values().removeIf(verified -> verified.getUsername().equals(username));
+    }
+
+    public Cache<String, VerifiedCredentials> getVerifiedCredentials() {
+        return verifiedCredentials;
+    }
+
+    private String keyOf(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secretKey);
+            byte[] digest = mac.doFinal((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean constantTimeEquals(String a, String b) {
+        return b != null && MessageDigest.isEqual(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    @Getter
+    @AllArgsConstructor
+    public static class VerifiedCredentials {
+
+        private final String username;
+
+        private final String passwordHash;
+    }
+}
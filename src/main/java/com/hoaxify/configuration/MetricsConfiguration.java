@@ -0,0 +1,32 @@
+package com.hoaxify.configuration;
+
+import com.hoaxify.hoax.HotFeedCache;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Metricas de la aplicacion, se exponen en /actuator/prometheus
+@Configuration
+public class MetricsConfiguration {
+
+    // habilita @Timed en los servicios
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public MeterBinder hotFeedCacheMetrics(HotFeedCache hotFeedCache) {
+        return registry -> {
+            FunctionCounter.builder("hoaxify.hotfeed.requests", hotFeedCache, HotFeedCache::getHits)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("hoaxify.hotfeed.requests", hotFeedCache, HotFeedCache::getMisses)
+                    .tag("result", "miss")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,30 @@
+package com.hoaxify.configuration;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+@Configuration
+public class PersistenceConfiguration {
+
+    // Despues de migrar revisa que las secuencias de ids avancen de a hoaxify.id-allocation-size. Si la
+    // secuencia avanza menos que el bloque que reparte Hibernate se repiten ids, mejor no arrancar
+    @Bean
+    public FlywayMigrationStrategy idSequenceCheck(AppConfiguration appConfiguration) {
+        return flyway -> {
+            flyway.migrate();
+            int allocationSize = appConfiguration.getIdAllocationSize();
+            List<String> mismatched = new JdbcTemplate(flyway.getConfiguration().getDataSource()).queryForList(
+                    "select sequence_name from information_schema.sequences " +
+                            "where sequence_name in ('USER_SEQ', 'HOAX_SEQ', 'FILE_ATTACHMENT_SEQ') and increment <> ?",
+                    String.class, allocationSize);
+            if (!mismatched.isEmpty()) {
+                throw new IllegalStateException("Sequences " + mismatched + " do not increment by hoaxify.id-allocation-size="
+                        + allocationSize + ", run \"alter sequence <name> increment by " + allocationSize + "\" first");
+            }
+        };
+    }
+}
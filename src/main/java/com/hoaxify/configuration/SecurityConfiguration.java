@@ -1,7 +1,12 @@
 package com.hoaxify.configuration;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.autoconfigure.web.server.ManagementPortType;
+import org.springframework.boot.actuate.health.HealthEndpoint;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
@@ -11,6 +16,7 @@ import org.springframework.security.config.annotation.web.configuration.WebSecur
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 @EnableWebSecurity
 @EnableGlobalMethodSecurity(prePostEnabled = true)
@@ -19,16 +25,37 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     @Autowired
     AuthUserService authUserService;
 
+    @Autowired
+    AppConfiguration appConfiguration;
+
+    @Autowired
+    TokenService tokenService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    Environment environment;
+
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http.csrf().disable();
         http.headers().disable();
 
         http.httpBasic().authenticationEntryPoint(new BasicAuthenticationEntryPoint());
+        if (appConfiguration.isTokenAuthEnabled()) {
+            http.addFilterBefore(new TokenAuthenticationFilter(tokenService, appConfiguration), BasicAuthenticationFilter.class);
+        }
+        // /actuator/health queda abierto. Metricas y prometheus (tiempos por endpoint y usuario, stats de caches) solo
+        // se sirven en management.server.port, que no se publica; si comparten el puerto de la aplicacion se rechazan
+        if (ManagementPortType.get(environment) != ManagementPortType.DIFFERENT) {
+            http.authorizeRequests().requestMatchers(EndpointRequest.toAnyEndpoint().excluding(HealthEndpoint.class)).denyAll();
+        }
         http
                 .authorizeRequests()
                 .antMatchers(HttpMethod.POST, "/api/1.0/login").authenticated()
                 .antMatchers(HttpMethod.PUT, "/api/1.0/users/{id:[0-9]+}").authenticated()
+                .antMatchers(HttpMethod.POST, "/api/1.0/users/{id:[0-9]+}/image").authenticated()
                 .antMatchers(HttpMethod.POST, "/api/1.0/hoaxes/**").authenticated()
                 .antMatchers(HttpMethod.DELETE, "/api/1.0/hoaxes/{id:[0-9]+}").authenticated()
                 .and()
@@ -40,13 +67,24 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
+        if (appConfiguration.isAuthCacheEnabled()) {
+            auth.authenticationProvider(cachingAuthenticationProvider());
+            return;
+        }
         auth.userDetailsService(authUserService).passwordEncoder(passwordEncoder());
     }
 
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new TimedPasswordEncoder(new BCryptPasswordEncoder(), meterRegistry);
+    }
+
+
+    @Bean
+    public CachingAuthenticationProvider cachingAuthenticationProvider() {
+        return new CachingAuthenticationProvider(authUserService, passwordEncoder(),
+                appConfiguration.getAuthCacheTtlSeconds(), appConfiguration.getAuthCacheMaxSize());
     }
 
 
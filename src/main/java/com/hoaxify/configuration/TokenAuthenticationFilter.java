@@ -0,0 +1,54 @@
+package com.hoaxify.configuration;
+
+import com.hoaxify.user.User;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER = "Bearer ";
+
+    private static final String BASIC = "Basic ";
+
+    private final TokenService tokenService;
+
+    private final AppConfiguration appConfiguration;
+
+    public TokenAuthenticationFilter(TokenService tokenService, AppConfiguration appConfiguration) {
+        this.tokenService = tokenService;
+        this.appConfiguration = appConfiguration;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+
+        if (header != null && header.startsWith(BEARER)) {
+            User user = tokenService.verifyToken(header.substring(BEARER.length()).trim());
+            if (user != null) {
+                UsernamePasswordAuthenticationToken authentication =
+                        new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            }
+        } else if (header != null && header.startsWith(BASIC) && !isBasicAllowed(request)) {
+            // con Basic desactivado solo se aceptan credenciales en /login para pedir el token
+            response.sendError(HttpStatus.UNAUTHORIZED.value(), HttpStatus.UNAUTHORIZED.getReasonPhrase());
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private boolean isBasicAllowed(HttpServletRequest request) {
+        return appConfiguration.isBasicAuthEnabled() || request.getServletPath().equals("/api/1.0/login");
+    }
+}
@@ -0,0 +1,94 @@
+package com.hoaxify.configuration;
+
+import com.hoaxify.user.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+// Token de acceso firmado con HMAC: base64url(id:expiresAt:username).base64url(firma)
+// Se valida sin ir a la base de datos ni pasar por BCrypt.
+@Service
+public class TokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final AppConfiguration appConfiguration;
+
+    private final SecretKeySpec secretKey;
+
+    public TokenService(AppConfiguration appConfiguration) {
+        this.appConfiguration = appConfiguration;
+        byte[] secret;
+        if (appConfiguration.getTokenSecret() == null || appConfiguration.getTokenSecret().isEmpty()) {
+            // sin secreto configurado los tokens solo valen hasta que se reinicia la aplicacion
+            if (appConfiguration.isTokenAuthEnabled()) {
+                if (appConfiguration.isTokenSecretRequired()) {
+                    throw new IllegalStateException("hoaxify.token-secret is required when hoaxify.token-auth-enabled is true");
+                }
+                log.warn("hoaxify.token-secret is not set, using a random secret: tokens stop working on restart "
+                        + "and are not accepted by other instances");
+            }
+            secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+        } else {
+            secret = appConfiguration.getTokenSecret().getBytes(StandardCharsets.UTF_8);
+        }
+        this.secretKey = new SecretKeySpec(secret, HMAC_ALGORITHM);
+    }
+
+    public String createToken(User user) {
+        long expiresAt = System.currentTimeMillis() / 1000 + appConfiguration.getTokenTtlSeconds();
+        String payload = user.getId() + ":" + expiresAt + ":" + user.getUsername();
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        return encode(payloadBytes) + "." + encode(sign(payloadBytes));
+    }
+
+    // devuelve null si el token no es valido o ya expiro
+    public User verifyToken(String token) {
+        int separator = token.indexOf('.');
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            byte[] payloadBytes = Base64.getUrlDecoder().decode(token.substring(0, separator));
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(separator + 1));
+            if (!MessageDigest.isEqual(sign(payloadBytes), signature)) {
+                return null;
+            }
+            String[] parts = new String(payloadBytes, StandardCharsets.UTF_8).split(":", 3);
+            if (parts.length != 3 || Long.parseLong(parts[1]) < System.currentTimeMillis() / 1000) {
+                return null;
+            }
+            User user = new User();
+            user.setId(Long.parseLong(parts[0]));
+            user.setUsername(parts[2]);
+            return user;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private byte[] sign(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secretKey);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -1,15 +1,15 @@
 package com.hoaxify.configuration;
 
+import com.hoaxify.shared.MultipartImage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.CacheControl;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.format.FormatterRegistry;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import java.io.File;
-import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class WebConfiguration implements WebMvcConfigurer {
@@ -18,13 +18,13 @@ public class WebConfiguration implements WebMvcConfigurer {
     AppConfiguration appConfiguration;
 
 
+    // los archivos multipart se pueden bindear directo a un campo MultipartImage de un VM
     @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry.addResourceHandler("/images/**")
-                .addResourceLocations("file:" + appConfiguration.getUploadPath() + "/")
-                .setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS));
+    public void addFormatters(FormatterRegistry registry) {
+        registry.addConverter(MultipartFile.class, MultipartImage.class, MultipartImage::new);
     }
 
+
     // Se encarga de crear el folder si no existe
     @Bean
     CommandLineRunner createUpLoadFolder(){
@@ -0,0 +1,14 @@
+package com.hoaxify.error;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class BadRequestException extends RuntimeException{
+
+    private static final long serialVersionUID = 2981650311347207516L;
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
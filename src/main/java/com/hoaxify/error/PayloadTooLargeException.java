@@ -0,0 +1,14 @@
+package com.hoaxify.error;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+public class PayloadTooLargeException extends RuntimeException{
+
+    private static final long serialVersionUID = -6172358946187403521L;
+
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+}
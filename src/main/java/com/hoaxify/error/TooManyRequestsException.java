@@ -0,0 +1,14 @@
+package com.hoaxify.error;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class TooManyRequestsException extends RuntimeException{
+
+    private static final long serialVersionUID = 3874123064172795263L;
+
+    public TooManyRequestsException(String message) {
+        super(message);
+    }
+}
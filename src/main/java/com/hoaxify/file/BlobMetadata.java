@@ -0,0 +1,13 @@
+package com.hoaxify.file;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class BlobMetadata {
+
+    private final long length;
+
+    private final long lastModified;
+}
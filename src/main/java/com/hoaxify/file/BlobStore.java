@@ -0,0 +1,36 @@
+package com.hoaxify.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+
+// Donde se guardan los archivos subidos. folder es la carpeta logica (perfil o adjuntos) y name el
+// nombre que queda en la base de datos; como se ubica fisicamente cada archivo lo decide la implementacion.
+public interface BlobStore {
+
+    // escribe todo el stream; si pasa de maxBytes lanza PayloadTooLargeException y no deja nada guardado
+    long write(String folder, String name, InputStream content, long maxBytes) throws IOException;
+
+    boolean exists(String folder, String name);
+
+    Optional<BlobMetadata> stat(String folder, String name);
+
+    // lanza NoSuchFileException si no existe
+    InputStream open(String folder, String name) throws IOException;
+
+    // lanza NoSuchFileException si no existe
+    long transferTo(String folder, String name, long position, long count, WritableByteChannel target) throws IOException;
+
+    // devuelve los bytes liberados, 0 si no existia
+    long delete(String folder, String name) throws IOException;
+
+    // si ya existe un archivo con el nombre destino se conserva ese y se borra el origen
+    void rename(String folder, String from, String to) throws IOException;
+
+    // archivo en disco, solo para backends locales (permite sendfile)
+    default Optional<Path> getLocalPath(String folder, String name) {
+        return Optional.empty();
+    }
+}
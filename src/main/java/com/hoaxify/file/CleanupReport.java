@@ -0,0 +1,21 @@
+package com.hoaxify.file;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+// Resultado de una corrida de FileService.cleanupStorage
+@Getter
+@ToString
+@AllArgsConstructor
+public class CleanupReport {
+
+    private final long filesDeleted;
+
+    private final long bytesReclaimed;
+
+    private final long durationMillis;
+
+    // false si la corrida se corto por el presupuesto y quedan huerfanos para la proxima
+    private final boolean completed;
+}
@@ -2,6 +2,8 @@ package com.hoaxify.file;
 
 import com.hoaxify.hoax.Hoax;
 import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.util.Date;
@@ -11,7 +13,9 @@ import java.util.Date;
 public class FileAttachment {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "file_attachment_seq")
+    @GenericGenerator(name = "file_attachment_seq", strategy = "com.hoaxify.shared.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "file_attachment_seq"))
     private long id;
 
     @Temporal(TemporalType.TIMESTAMP)
@@ -1,11 +1,28 @@
 package com.hoaxify.file;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
 public interface FileAttachmentRepository extends JpaRepository<FileAttachment, Long> {
 
-    List<FileAttachment> findByDateBeforeAndHoaxIsNull(Date date);
+    long countByName(String name);
+
+    // referencias a un archivo sin contar las filas que se estan borrando
+    long countByNameAndIdNotIn(String name, Collection<Long> ids);
+
+    // paginado por id para no cargar todos los huerfanos de una vez
+    List<FileAttachment> findByDateBeforeAndHoaxIsNullAndIdGreaterThan(Date date, long id, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("delete from FileAttachment f where f.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 }
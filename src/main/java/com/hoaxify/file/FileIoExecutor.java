@@ -0,0 +1,98 @@
+package com.hoaxify.file;
+
+import com.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.error.TooManyRequestsException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Corre las escrituras a disco fuera del hilo de Tomcat cuando hoaxify.file-io-async esta activo.
+// Usa virtual threads si el runtime los tiene (Java 21+) y si no un pool acotado. Con mas de
+// file-io-threads + file-io-queue-capacity tareas en curso rechaza con 429 en vez de encolar sin limite.
+@Component
+public class FileIoExecutor {
+
+    AppConfiguration appConfiguration;
+
+    private final ExecutorService executor;
+
+    private final Semaphore permits;
+
+    private final boolean virtualThreads;
+
+    public FileIoExecutor(AppConfiguration appConfiguration) {
+        this.appConfiguration = appConfiguration;
+        int threads = appConfiguration.getFileIoThreads();
+        int queueCapacity = appConfiguration.getFileIoQueueCapacity();
+        permits = new Semaphore(threads + queueCapacity);
+
+        ExecutorService virtualExecutor = appConfiguration.isFileIoVirtualThreads() ? newVirtualThreadExecutor() : null;
+        if (virtualExecutor != null) {
+            executor = virtualExecutor;
+            virtualThreads = true;
+        } else {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, queueCapacity)));
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+            virtualThreads = false;
+        }
+    }
+
+    // en modo sincronico corre en el hilo actual y devuelve el future ya completo
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        if (!appConfiguration.isFileIoAsync()) {
+            return CompletableFuture.completedFuture(task.get());
+        }
+        if (!permits.tryAcquire()) {
+            throw new TooManyRequestsException("Too many file operations in progress, try again later");
+        }
+        try {
+            CompletableFuture<T> future = CompletableFuture.supplyAsync(task, executor);
+            future.whenComplete((result, e) -> permits.release());
+            return future;
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw new TooManyRequestsException("Too many file operations in progress, try again later");
+        }
+    }
+
+    // Para los controllers: en modo sincronico devuelve el valor y Spring MVC responde en el mismo hilo.
+    // Un future, aunque ya este completo, pasa por el dispatch asincronico de Servlet y otra vuelta de filtros.
+    // Los controllers devuelven Object y Spring elige como escribir la respuesta segun el tipo real.
+    public Object execute(Supplier<?> task) {
+        if (!appConfiguration.isFileIoAsync()) {
+            return task.get();
+        }
+        return submit(task);
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // el proyecto compila para Java 8, asi que Executors.newVirtualThreadPerTaskExecutor se busca por reflection
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+}
@@ -1,99 +1,351 @@
 package com.hoaxify.file;
 
+import com.hoaxify.UserRepository;
 import com.hoaxify.configuration.AppConfiguration;
-import org.apache.commons.io.FileUtils;
+import com.hoaxify.shared.AfterCommit;
+import com.hoaxify.shared.ImageContent;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.io.IOUtils;
 import org.apache.tika.Tika;
+import org.apache.tika.mime.MimeTypes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.Base64;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Service
 @EnableScheduling
 public class FileService {
 
+    private static final Logger log = LoggerFactory.getLogger(FileService.class);
+
+    public static final int TYPE_DETECTION_BYTES = MimeTypes.getDefaultMimeTypes().getMinLength();
+
+    private static final int NAME_LOCK_STRIPES = 64;
+
     AppConfiguration appConfiguration;
 
     Tika tika;
 
     FileAttachmentRepository fileAttachmentRepository;
 
-    public FileService(AppConfiguration appConfiguration, FileAttachmentRepository fileAttachmentRepository) {
+    UserRepository userRepository;
+
+    StoredFileService storedFileService;
+
+    BlobStore blobStore;
+
+    private final Timer detectTypeTimer;
+
+    private final Counter cleanupFilesCounter;
+
+    private final Counter cleanupBytesCounter;
+
+    private final ExecutorService cleanupExecutor;
+
+    private volatile CleanupReport lastCleanupReport;
+
+    // con nombres por contenido el rename de una subida y el borrado del mismo nombre se serializan por franja
+    private final Object[] nameLocks = new Object[NAME_LOCK_STRIPES];
+
+    // nombres recien subidos cuya fila todavia no se confirmo, el borrado no los toca
+    private final Map<String, Integer> pendingNames = new ConcurrentHashMap<>();
+
+    public FileService(AppConfiguration appConfiguration, FileAttachmentRepository fileAttachmentRepository,
+                       UserRepository userRepository, StoredFileService storedFileService, BlobStore blobStore,
+                       MeterRegistry meterRegistry) {
         this.appConfiguration = appConfiguration;
         tika = new Tika();
         this.fileAttachmentRepository = fileAttachmentRepository;
+        this.userRepository = userRepository;
+        this.storedFileService = storedFileService;
+        this.blobStore = blobStore;
+
+        // detectType tambien se llama desde adentro del servicio, @Timed no lo veria
+        detectTypeTimer = meterRegistry.timer("hoaxify.file.detect-type");
+        cleanupFilesCounter = Counter.builder("hoaxify.file.cleanup.files").register(meterRegistry);
+        cleanupBytesCounter = Counter.builder("hoaxify.file.cleanup.reclaimed").baseUnit("bytes").register(meterRegistry);
+
+        // pool acotado (hilos y cola) para borrar archivos, los hilos se liberan entre corridas
+        int threads = appConfiguration.getCleanupThreads();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(appConfiguration.getCleanupBatchSize()), new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        cleanupExecutor = executor;
+
+        for (int i = 0; i < nameLocks.length; i++) {
+            nameLocks[i] = new Object();
+        }
     }
 
-    public String saveProfileImage(String base64Image) throws IOException {
+    // se llama dentro de la transaccion que guarda al usuario, el nombre queda reservado hasta que termina
+    @Timed("hoaxify.file.profile-image.write")
+    public String saveProfileImage(ImageContent image) throws IOException {
+        String folder = appConfiguration.getProfileImagesFolder();
         String imageName = getRandomName();
-        byte[] decodeBytes = Base64.getDecoder().decode(base64Image);
-
-        File target = new File(appConfiguration.getFullProfileImagePath() + "/" + imageName);
-        FileUtils.writeByteArrayToFile(target, decodeBytes);
+        // se decodifica mientras se escribe, nunca queda la imagen entera en un byte[]
+        boolean contentAddressed = appConfiguration.isContentAddressedStorage();
+        MessageDigest digest = newDigest();
+        try (InputStream in = contentAddressed ? new DigestInputStream(image.openStream(), digest) : image.openStream()) {
+            blobStore.write(folder, imageName, in, Long.MAX_VALUE);
+        }
+        if (contentAddressed) {
+            // si ya existe el mismo contenido se descarta lo recien escrito
+            String hash = moveToContentAddress(folder, imageName, toHex(digest));
+            AfterCommit.runAfterCompletion(() -> release(hash));
+            return hash;
+        }
         return imageName;
     }
 
     public String detectType(byte[] fileArr) {
-        return tika.detect(fileArr);
+        return detectTypeTimer.record(() -> tika.detect(fileArr));
     }
 
     public void deleteProfileImage(String image) {
-        try {
-            Files.deleteIfExists(Paths.get(appConfiguration.getFullProfileImagePath() + "/" + image));
-        } catch (IOException e) {
-            e.printStackTrace();
+        synchronized (lockFor(image)) {
+            // con nombres por contenido otro usuario puede estar usando el mismo archivo
+            if (appConfiguration.isContentAddressedStorage()
+                    && (pendingNames.containsKey(image) || userRepository.countByImage(image) > 0)) {
+                return;
+            }
+            String folder = appConfiguration.getProfileImagesFolder();
+            try {
+                blobStore.delete(folder, image);
+                storedFileService.invalidate(folder, image);
+                for (int size : appConfiguration.getProfileImageSizes()) {
+                    String variant = ProfileImageVariantService.variantName(image, size);
+                    blobStore.delete(folder, variant);
+                    storedFileService.invalidate(folder, variant);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 
+    @Timed("hoaxify.file.attachment.write")
     public FileAttachment saveAttachment(MultipartFile file) {
         FileAttachment fileAttachment = new FileAttachment();
         fileAttachment.setDate(new Date());
         String randomName = getRandomName();
         fileAttachment.setName(randomName);
 
-        File target = new File(appConfiguration.getFullAttachmentsPath() + "/" + randomName);
-
-        try {
-            byte[] fileAsByte = file.getBytes();
-            FileUtils.writeByteArrayToFile(target, fileAsByte);
-            fileAttachment.setFileType(detectType(fileAsByte));
+        String folder = appConfiguration.getAttachmentFolder();
+        boolean contentAddressed = appConfiguration.isContentAddressedStorage();
+        MessageDigest digest = newDigest();
+        String hash = null;
+        try (InputStream in = contentAddressed ? new DigestInputStream(file.getInputStream(), digest) : file.getInputStream()) {
+            fileAttachment.setFileType(write(in, folder, randomName, appConfiguration.getMaxAttachmentSize()));
+            if (contentAddressed) {
+                hash = moveToContentAddress(folder, randomName, toHex(digest));
+                fileAttachment.setName(hash);
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return fileAttachmentRepository.save(fileAttachment);
+        try {
+            return fileAttachmentRepository.save(fileAttachment);
+        } finally {
+            if (hash != null) {
+                String saved = hash;
+                AfterCommit.runAfterCompletion(() -> release(saved));
+            }
+        }
     }
 
 
+    // Copia el stream al BlobStore sin cargarlo entero en memoria. El tipo se detecta solo con los
+    // primeros bytes y el maximo de bytes lo controla el store mientras copia.
+    private String write(InputStream in, String folder, String name, long maxSize) throws IOException {
+        byte[] header = new byte[TYPE_DETECTION_BYTES];
+        int headerLength = IOUtils.read(in, header);
+
+        blobStore.write(folder, name, new SequenceInputStream(new ByteArrayInputStream(header, 0, headerLength), in), maxSize);
+        return detectType(Arrays.copyOf(header, headerLength));
+    }
+
+
+    // El hash se calcula mientras se escribe; si ya habia un archivo con ese contenido se usa ese y se
+    // descarta el nuevo. El nombre queda reservado (release) hasta que la fila que lo usa se confirma,
+    // asi un borrado del mismo hash no puede colarse entre el rename y el commit.
+    private String moveToContentAddress(String folder, String written, String hash) throws IOException {
+        synchronized (lockFor(hash)) {
+            blobStore.rename(folder, written, hash);
+            pendingNames.merge(hash, 1, Integer::sum);
+        }
+        return hash;
+    }
+
+    private void release(String hash) {
+        synchronized (lockFor(hash)) {
+            pendingNames.computeIfPresent(hash, (name, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    private Object lockFor(String name) {
+        return nameLocks[Math.floorMod(name.hashCode(), nameLocks.length)];
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String toHex(MessageDigest digest) {
+        return String.format("%064x", new BigInteger(1, digest.digest()));
+    }
+
+
+    // Borra los adjuntos huerfanos por lotes: los archivos en paralelo en un pool acotado y las filas
+    // con un solo delete por lote. Si se pasa del presupuesto corta y sigue en la proxima corrida.
+    @Timed("hoaxify.file.cleanup")
     @Scheduled(fixedRate = 60 *60 *1000)
     public void cleanupStorage() {
-        Date oneHourAgo = new Date(System.currentTimeMillis() - (60*60*1000));
-        final List<FileAttachment> oldFiles = fileAttachmentRepository.findByDateBeforeAndHoaxIsNull(oneHourAgo);
+        long startedAt = System.currentTimeMillis();
+        Date oneHourAgo = new Date(startedAt - (60*60*1000));
+        long deadline = startedAt + appConfiguration.getCleanupMaxDurationMillis();
+
+        long filesDeleted = 0;
+        long bytesReclaimed = 0;
+        long lastId = 0;
+        boolean completed = false;
+        while (filesDeleted < appConfiguration.getCleanupMaxFilesPerRun() && System.currentTimeMillis() < deadline) {
+            int batchSize = (int) Math.min(appConfiguration.getCleanupBatchSize(),
+                    appConfiguration.getCleanupMaxFilesPerRun() - filesDeleted);
+            List<FileAttachment> oldFiles = fileAttachmentRepository.findByDateBeforeAndHoaxIsNullAndIdGreaterThan(
+                    oneHourAgo, lastId, PageRequest.of(0, batchSize, Sort.by("id")));
+            if (oldFiles.isEmpty()) {
+                completed = true;
+                break;
+            }
+
+            // primero los archivos: si uno no se pudo borrar su fila queda y se reintenta en la proxima corrida
+            List<Long> removedIds = new ArrayList<>();
+            bytesReclaimed += deleteAttachmentFiles(oldFiles, removedIds);
+            if (!removedIds.isEmpty()) {
+                fileAttachmentRepository.deleteByIdIn(removedIds);
+            }
+            filesDeleted += removedIds.size();
+            lastId = oldFiles.get(oldFiles.size() - 1).getId();
+
+            if (oldFiles.size() < batchSize) {
+                completed = true;
+                break;
+            }
+        }
 
-        for (FileAttachment file : oldFiles){
-            deleteAttachmentImage(file.getName());
-            fileAttachmentRepository.deleteById(file.getId());
+        cleanupFilesCounter.increment(filesDeleted);
+        cleanupBytesCounter.increment(bytesReclaimed);
+        lastCleanupReport = new CleanupReport(filesDeleted, bytesReclaimed, System.currentTimeMillis() - startedAt, completed);
+        log.info("Attachment cleanup finished: {}", lastCleanupReport);
+    }
+
+    public CleanupReport getLastCleanupReport() {
+        return lastCleanupReport;
+    }
+
+    @PreDestroy
+    public void shutdownCleanupExecutor() {
+        cleanupExecutor.shutdown();
+    }
+
+    // devuelve los bytes liberados y agrega a removedIds los adjuntos cuyo archivo ya no esta
+    private long deleteAttachmentFiles(List<FileAttachment> files, List<Long> removedIds) {
+        List<Long> batchIds = files.stream().map(FileAttachment::getId).collect(Collectors.toList());
+        List<CompletableFuture<Long>> deletions = files.stream()
+                .map(file -> CompletableFuture.supplyAsync(() -> deleteAttachmentFile(file.getName(), batchIds), cleanupExecutor))
+                .collect(Collectors.toList());
+        long bytesReclaimed = 0;
+        for (int i = 0; i < files.size(); i++) {
+            try {
+                bytesReclaimed += deletions.get(i).join();
+                removedIds.add(files.get(i).getId());
+            } catch (CompletionException e) {
+                log.warn("Could not delete attachment file {}, retrying on next cleanup", files.get(i).getName(), e.getCause());
+            }
+        }
+        return bytesReclaimed;
+    }
+
+    // las filas del lote todavia existen, no cuentan como referencias
+    private long deleteAttachmentFile(String name, Collection<Long> batchIds) {
+        if (name == null) {
+            return 0;
+        }
+        synchronized (lockFor(name)) {
+            if (appConfiguration.isContentAddressedStorage()
+                    && (pendingNames.containsKey(name) || fileAttachmentRepository.countByNameAndIdNotIn(name, batchIds) > 0)) {
+                return 0;
+            }
+            try {
+                long size = blobStore.delete(appConfiguration.getAttachmentFolder(), name);
+                storedFileService.invalidate(appConfiguration.getAttachmentFolder(), name);
+                return size;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
     }
 
 
 
     public void deleteAttachmentImage(String image) {
-        try {
-            Files.deleteIfExists(Paths.get(appConfiguration.getFullAttachmentsPath() + "/" + image));
-        } catch (IOException e) {
-            e.printStackTrace();
+        synchronized (lockFor(image)) {
+            if (isReferencedAttachment(image)) {
+                return;
+            }
+            try {
+                blobStore.delete(appConfiguration.getAttachmentFolder(), image);
+                storedFileService.invalidate(appConfiguration.getAttachmentFolder(), image);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 
+    // con nombres por contenido varios adjuntos pueden compartir el mismo archivo
+    private boolean isReferencedAttachment(String name) {
+        return appConfiguration.isContentAddressedStorage()
+                && (pendingNames.containsKey(name) || fileAttachmentRepository.countByName(name) > 0);
+    }
+
     private String getRandomName() {
         return UUID.randomUUID().toString().replace("-", "");
     }
@@ -13,9 +13,12 @@ public class FileUploadController {
     @Autowired
     FileService fileService;
 
+    @Autowired
+    FileIoExecutor fileIoExecutor;
+
 
     @PostMapping("/hoaxes/upload")
-    public FileAttachment uploadForHoax(MultipartFile file){
-        return fileService.saveAttachment(file);
+    public Object uploadForHoax(MultipartFile file){
+        return fileIoExecutor.execute(() -> fileService.saveAttachment(file));
     }
 }
@@ -0,0 +1,105 @@
+package com.hoaxify.file;
+
+import com.hoaxify.error.PayloadTooLargeException;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Guarda todo en memoria, pensado para tests (hoaxify.blob-store=memory)
+@Component
+@ConditionalOnProperty(prefix = "hoaxify", name = "blob-store", havingValue = "memory")
+public class InMemoryBlobStore implements BlobStore {
+
+    private final Map<String, Blob> blobs = new ConcurrentHashMap<>();
+
+    @Override
+    public long write(String folder, String name, InputStream content, long maxBytes) throws IOException {
+        long limit = maxBytes < Long.MAX_VALUE ? maxBytes + 1 : Long.MAX_VALUE;
+        byte[] bytes = IOUtils.toByteArray(new BoundedInputStream(content, limit));
+        if (bytes.length > maxBytes) {
+            throw new PayloadTooLargeException("File exceeds the maximum size of " + maxBytes + " bytes");
+        }
+        blobs.put(key(folder, name), new Blob(bytes, System.currentTimeMillis()));
+        return bytes.length;
+    }
+
+    @Override
+    public boolean exists(String folder, String name) {
+        return blobs.containsKey(key(folder, name));
+    }
+
+    @Override
+    public Optional<BlobMetadata> stat(String folder, String name) {
+        Blob blob = blobs.get(key(folder, name));
+        return blob == null ? Optional.empty() : Optional.of(new BlobMetadata(blob.bytes.length, blob.lastModified));
+    }
+
+    @Override
+    public InputStream open(String folder, String name) throws IOException {
+        return new ByteArrayInputStream(existing(folder, name).bytes);
+    }
+
+    @Override
+    public long transferTo(String folder, String name, long position, long count, WritableByteChannel target) throws IOException {
+        byte[] bytes = existing(folder, name).bytes;
+        int start = (int) Math.min(position, bytes.length);
+        int length = (int) Math.min(count, bytes.length - start);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, start, length);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        return length;
+    }
+
+    @Override
+    public long delete(String folder, String name) {
+        Blob removed = blobs.remove(key(folder, name));
+        return removed == null ? 0 : removed.bytes.length;
+    }
+
+    @Override
+    public void rename(String folder, String from, String to) throws IOException {
+        Blob source = existing(folder, from);
+        blobs.putIfAbsent(key(folder, to), source);
+        blobs.remove(key(folder, from));
+    }
+
+    public void clear() {
+        blobs.clear();
+    }
+
+    private Blob existing(String folder, String name) throws NoSuchFileException {
+        Blob blob = blobs.get(key(folder, name));
+        if (blob == null) {
+            throw new NoSuchFileException(folder + "/" + name);
+        }
+        return blob;
+    }
+
+    private String key(String folder, String name) {
+        return folder + "/" + name;
+    }
+
+    private static class Blob {
+
+        final byte[] bytes;
+
+        final long lastModified;
+
+        Blob(byte[] bytes, long lastModified) {
+            this.bytes = bytes;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.hoaxify.file;
+
+import com.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.error.BadRequestException;
+import com.hoaxify.error.PayloadTooLargeException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+
+// Guarda los archivos en upload-path/<folder>/<xx>/<yy>/<name>, con xx/yy sacados del hash del nombre,
+// para que ningun directorio junte cientos de miles de archivos. Los archivos que quedaron en el
+// layout plano anterior (upload-path/<folder>/<name>) se siguen encontrando al leer y al borrar.
+@Component
+@ConditionalOnProperty(prefix = "hoaxify", name = "blob-store", havingValue = "local", matchIfMissing = true)
+public class LocalBlobStore implements BlobStore {
+
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    AppConfiguration appConfiguration;
+
+    public LocalBlobStore(AppConfiguration appConfiguration) {
+        this.appConfiguration = appConfiguration;
+    }
+
+    @Override
+    public long write(String folder, String name, InputStream content, long maxBytes) throws IOException {
+        Path target = shardedPath(folder, name);
+        Files.createDirectories(target.getParent());
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // no se usa transferFrom: desde un canal que no es de archivo, si la lectura falla despues de
+            // copiar algo devuelve lo copiado sin la excepcion y el archivo queda truncado como si estuviera bien
+            ReadableByteChannel source = Channels.newChannel(content);
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_BYTES);
+            long written = 0;
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                written += read;
+                if (written > maxBytes) {
+                    throw new PayloadTooLargeException("File exceeds the maximum size of " + maxBytes + " bytes");
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            }
+            return written;
+        } catch (IOException | RuntimeException e) {
+            // no queda un archivo a medias, ni por tamano ni por contenido invalido
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean exists(String folder, String name) {
+        return find(folder, name).isPresent();
+    }
+
+    @Override
+    public Optional<BlobMetadata> stat(String folder, String name) {
+        for (Path path : candidates(folder, name)) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attributes.isRegularFile()) {
+                    return Optional.of(new BlobMetadata(attributes.size(), attributes.lastModifiedTime().toMillis()));
+                }
+            } catch (IOException e) {
+                // se prueba la siguiente ubicacion
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public InputStream open(String folder, String name) throws IOException {
+        return Files.newInputStream(existing(folder, name));
+    }
+
+    @Override
+    public long transferTo(String folder, String name, long position, long count, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(existing(folder, name), StandardOpenOption.READ)) {
+            long transferredTotal = 0;
+            while (transferredTotal < count) {
+                long transferred = channel.transferTo(position + transferredTotal, count - transferredTotal, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                transferredTotal += transferred;
+            }
+            return transferredTotal;
+        }
+    }
+
+    @Override
+    public long delete(String folder, String name) throws IOException {
+        Optional<Path> path = find(folder, name);
+        if (!path.isPresent()) {
+            return 0;
+        }
+        try {
+            long size = Files.size(path.get());
+            Files.delete(path.get());
+            return size;
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public void rename(String folder, String from, String to) throws IOException {
+        Path source = existing(folder, from);
+        Path target = shardedPath(folder, to);
+        if (Files.exists(target)) {
+            Files.delete(source);
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public Optional<Path> getLocalPath(String folder, String name) {
+        return find(folder, name);
+    }
+
+    public Path shardedPath(String folder, String name) {
+        int hash = name.hashCode();
+        hash ^= hash >>> 16;
+        String shard = String.format("%02x/%02x", (hash >>> 8) & 0xff, hash & 0xff);
+        return folderPath(folder).resolve(shard).resolve(checkName(name));
+    }
+
+    private Path legacyPath(String folder, String name) {
+        return folderPath(folder).resolve(checkName(name));
+    }
+
+    private Path[] candidates(String folder, String name) {
+        return new Path[]{shardedPath(folder, name), legacyPath(folder, name)};
+    }
+
+    private Optional<Path> find(String folder, String name) {
+        for (Path path : candidates(folder, name)) {
+            if (Files.isRegularFile(path)) {
+                return Optional.of(path);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Path existing(String folder, String name) throws NoSuchFileException {
+        return find(folder, name).orElseThrow(() -> new NoSuchFileException(folder + "/" + name));
+    }
+
+    private Path folderPath(String folder) {
+        return Paths.get(appConfiguration.getUploadPath(), checkName(folder)).toAbsolutePath().normalize();
+    }
+
+    // evita que un nombre como ".." o con "/" salga de la carpeta. Los nombres pueden venir del path
+    // del request, asi que responde 400 y no 500
+    private String checkName(String name) {
+        if (name.isEmpty() || name.equals(".") || name.equals("..") || name.contains("/") || name.contains("\\")) {
+            throw new BadRequestException("Invalid file name " + name);
+        }
+        return name;
+    }
+}
@@ -0,0 +1,167 @@
+package com.hoaxify.file;
+
+import com.hoaxify.configuration.AppConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Genera versiones cuadradas y chicas de las imagenes de perfil (avatar 64/128/256 por defecto) para que
+// el feed no baje el original. Se guardan en la misma carpeta como <nombre>-<tamano> y se piden con
+// /images/profile/<nombre>?size=<tamano>; mientras no existan se sirve el original. Se borran junto
+// con la imagen en FileService.deleteProfileImage.
+@Service
+public class ProfileImageVariantService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProfileImageVariantService.class);
+
+    AppConfiguration appConfiguration;
+
+    BlobStore blobStore;
+
+    StoredFileService storedFileService;
+
+    private final ExecutorService executor;
+
+    public ProfileImageVariantService(AppConfiguration appConfiguration, BlobStore blobStore, StoredFileService storedFileService) {
+        this.appConfiguration = appConfiguration;
+        this.blobStore = blobStore;
+        this.storedFileService = storedFileService;
+
+        // si la cola se llena se descarta: la imagen se sigue sirviendo en tamano original
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(appConfiguration.getProfileImageVariantThreads(),
+                appConfiguration.getProfileImageVariantThreads(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(appConfiguration.getProfileImageVariantQueueCapacity()),
+                (task, rejectedBy) -> log.warn("Profile image variant queue is full, task discarded"));
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+    }
+
+    public static String variantName(String image, int size) {
+        return image + "-" + size;
+    }
+
+    public boolean isVariantSize(int size) {
+        return appConfiguration.getProfileImageSizes().contains(size);
+    }
+
+    // con hoaxify.profile-image-variants-async=false se generan en el hilo actual
+    public void generateVariantsAsync(String image) {
+        if (!appConfiguration.isProfileImageVariantsAsync()) {
+            generateVariants(image);
+            return;
+        }
+        executor.execute(() -> generateVariants(image));
+    }
+
+    public void generateVariants(String image) {
+        String folder = appConfiguration.getProfileImagesFolder();
+        try {
+            BufferedImage source;
+            try (InputStream in = blobStore.open(folder, image)) {
+                source = read(image, in);
+            }
+            if (source == null) {
+                return;
+            }
+            // PNG conserva la transparencia, el resto se guarda como JPEG
+            String format = source.getColorModel().hasAlpha() ? "png" : "jpg";
+            for (int size : appConfiguration.getProfileImageSizes()) {
+                String variant = variantName(image, size);
+                // con nombres por contenido la misma imagen ya puede tener sus variantes
+                if (blobStore.exists(folder, variant)) {
+                    continue;
+                }
+                byte[] bytes = encode(resize(source, size), format);
+                blobStore.write(folder, variant, new ByteArrayInputStream(bytes), Long.MAX_VALUE);
+                storedFileService.invalidate(folder, variant);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not generate variants for profile image {}", image, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // Las dimensiones salen del encabezado antes de decodificar: un PNG chico puede declarar 50000x50000 y
+    // el raster no entra en memoria (OutOfMemoryError, que no se atrapa). Por encima de profile-image-max-pixels
+    // no se generan variantes; las imagenes grandes se decodifican salteando pixeles, alcanza con el doble
+    // del tamano mas grande que se genera.
+    private BufferedImage read(String image, InputStream in) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long width = reader.getWidth(0);
+                long height = reader.getHeight(0);
+                if (width * height > appConfiguration.getProfileImageMaxPixels()) {
+                    log.warn("Profile image {} is {}x{}, too large to generate variants", image, width, height);
+                    return null;
+                }
+                int largest = Collections.max(appConfiguration.getProfileImageSizes());
+                int subsampling = (int) Math.max(1, Math.min(width, height) / (2L * largest));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // recorta el cuadrado central y lo achica a size x size, nunca agranda
+    private BufferedImage resize(BufferedImage source, int size) {
+        int side = Math.min(source.getWidth(), source.getHeight());
+        int x = (source.getWidth() - side) / 2;
+        int y = (source.getHeight() - side) / 2;
+        BufferedImage current = source.getSubimage(x, y, side, side);
+
+        int target = Math.min(size, side);
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        // a la mitad por paso, con una sola pasada bilinear las reducciones grandes pierden mucho detalle
+        do {
+            int next = Math.max(target, current.getWidth() / 2);
+            BufferedImage scaled = new BufferedImage(next, next, type);
+            Graphics2D graphics = scaled.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(current, 0, 0, next, next, null);
+            graphics.dispose();
+            current = scaled;
+        } while (current.getWidth() > target);
+        return current;
+    }
+
+    private byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, format, out)) {
+            throw new IOException("No writer for " + format);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,27 @@
+package com.hoaxify.file;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+// Metadatos de un archivo del upload store, se guardan en cache para no hacer stat en cada request
+@Getter
+@AllArgsConstructor
+public class StoredFile {
+
+    private final String folder;
+
+    private final String name;
+
+    private final long length;
+
+    private final long lastModified;
+
+    private final String eTag;
+
+    private final String contentType;
+
+    // null si el BlobStore no guarda en disco local
+    private final Path localPath;
+}
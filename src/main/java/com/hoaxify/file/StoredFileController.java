@@ -0,0 +1,142 @@
+package com.hoaxify.file;
+
+import com.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.error.BadRequestException;
+import com.hoaxify.error.NotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Sirve las imagenes de perfil y los adjuntos sin copiar el archivo por el heap:
+// usa sendfile de Tomcat cuando el archivo esta en disco local y BlobStore.transferTo si no.
+@RestController
+public class StoredFileController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // por debajo de este tamano es mas barato escribir directo al buffer de la respuesta
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+
+    private static final Pattern SINGLE_RANGE = Pattern.compile("bytes=(\\d{0,18})-(\\d{0,18})");
+
+    @Autowired
+    StoredFileService storedFileService;
+
+    @Autowired
+    BlobStore blobStore;
+
+    @Autowired
+    ProfileImageVariantService profileImageVariantService;
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
+
+    @GetMapping("/images/{folder}/{name:.+}")
+    public void getStoredFile(@PathVariable String folder, @PathVariable String name, @RequestParam(required = false) Integer size,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        CacheControl cacheControl = CacheControl.maxAge(365, TimeUnit.DAYS);
+        StoredFile file = null;
+        if (size != null) {
+            if (!folder.equals(appConfiguration.getProfileImagesFolder()) || !profileImageVariantService.isVariantSize(size)) {
+                throw new BadRequestException("Unsupported image size " + size);
+            }
+            file = storedFileService.find(folder, ProfileImageVariantService.variantName(name, size)).orElse(null);
+            if (file == null) {
+                // la version chica todavia se esta generando, el original no se guarda mucho tiempo en esta URL
+                cacheControl = CacheControl.maxAge(60, TimeUnit.SECONDS);
+            }
+        }
+        if (file == null) {
+            file = storedFileService.find(folder, name)
+                    .orElseThrow(() -> new NotFoundException("File " + name + " not found"));
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (new ServletWebRequest(request, response).checkNotModified(file.getETag(), file.getLastModified())) {
+            return;
+        }
+        response.setContentType(file.getContentType());
+
+        long start = 0;
+        long count = file.getLength();
+        Matcher range = getRange(request, file);
+        if (range != null) {
+            long length = file.getLength();
+            long end = length - 1;
+            if (range.group(1).isEmpty()) {
+                // "bytes=-N" son los ultimos N bytes
+                start = Math.max(0, length - Long.parseLong(range.group(2)));
+            } else {
+                start = Long.parseLong(range.group(1));
+                if (!range.group(2).isEmpty()) {
+                    end = Math.min(end, Long.parseLong(range.group(2)));
+                }
+            }
+            if (start > end) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            count = end - start + 1;
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        response.setContentLengthLong(count);
+
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        if (file.getLocalPath() != null && count >= SENDFILE_MIN_BYTES
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.getLocalPath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        try {
+            blobStore.transferTo(file.getFolder(), file.getName(), start, count, Channels.newChannel(response.getOutputStream()));
+        } catch (NoSuchFileException e) {
+            // se borro despues de cachear los metadatos
+            storedFileService.invalidate(file);
+            throw new NotFoundException("File " + file.getName() + " not found");
+        }
+    }
+
+    // Solo se atiende un rango; con varios rangos o un If-Range que no coincide se devuelve el archivo entero
+    private Matcher getRange(HttpServletRequest request, StoredFile file) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(file.getETag())) {
+            return null;
+        }
+        Matcher matcher = SINGLE_RANGE.matcher(rangeHeader.trim());
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            return null;
+        }
+        return matcher;
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.hoaxify.file;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hoaxify.configuration.AppConfiguration;
+import org.apache.tika.Tika;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class StoredFileService {
+
+    AppConfiguration appConfiguration;
+
+    BlobStore blobStore;
+
+    Tika tika;
+
+    private final Cache<String, StoredFile> metadata;
+
+    public StoredFileService(AppConfiguration appConfiguration, BlobStore blobStore) {
+        this.appConfiguration = appConfiguration;
+        this.blobStore = blobStore;
+        tika = new Tika();
+        metadata = Caffeine.newBuilder()
+                .maximumSize(appConfiguration.getStoredFileCacheMaxSize())
+                .expireAfterWrite(appConfiguration.getStoredFileCacheTtlSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    // Solo se sirven archivos de las carpetas de perfil y adjuntos
+    public Optional<StoredFile> find(String folder, String name) {
+        if (!isServedFolder(folder) || !isValidName(name)) {
+            return Optional.empty();
+        }
+        String key = key(folder, name);
+        StoredFile cached = metadata.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        StoredFile storedFile = read(folder, name);
+        if (storedFile != null) {
+            metadata.put(key, storedFile);
+        }
+        return Optional.ofNullable(storedFile);
+    }
+
+    public void invalidate(String folder, String name) {
+        metadata.invalidate(key(folder, name));
+    }
+
+    public void invalidate(StoredFile storedFile) {
+        invalidate(storedFile.getFolder(), storedFile.getName());
+    }
+
+    private boolean isServedFolder(String folder) {
+        return folder.equals(appConfiguration.getProfileImagesFolder()) || folder.equals(appConfiguration.getAttachmentFolder());
+    }
+
+    // evita que un nombre como ".." salga de la carpeta
+    private boolean isValidName(String name) {
+        return !name.isEmpty() && !name.equals(".") && !name.equals("..") && !name.contains("/") && !name.contains("\\");
+    }
+
+    private StoredFile read(String folder, String name) {
+        Optional<BlobMetadata> blobMetadata = blobStore.stat(folder, name);
+        if (!blobMetadata.isPresent()) {
+            return null;
+        }
+        long length = blobMetadata.get().getLength();
+        long lastModified = blobMetadata.get().getLastModified();
+        String eTag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        try (InputStream in = new BufferedInputStream(blobStore.open(folder, name))) {
+            return new StoredFile(folder, name, length, lastModified, eTag, tika.detect(in, name),
+                    blobStore.getLocalPath(folder, name).orElse(null));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private String key(String folder, String name) {
+        return folder + "/" + name;
+    }
+}
@@ -0,0 +1,65 @@
+package com.hoaxify.hoax;
+
+import com.hoaxify.file.FileAttachment;
+import com.hoaxify.user.User;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import javax.persistence.*;
+import java.util.Date;
+
+// Copia desnormalizada de un hoax con los datos del autor y del adjunto, para que leer el feed sea
+// un recorrido de una sola tabla. La mantienen HoaxService.save/deleteHoax y, cuando el autor cambia
+// nombre o imagen, HoaxService.onUserUpdated. El id es el del hoax y la fila se borra en cascada con el.
+// La tabla y sus indices se crean en las migraciones de db/migration.
+@Data
+@NoArgsConstructor
+@Entity
+public class FeedEntry {
+
+    @Id
+    private Long id;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Hoax hoax;
+
+    @Column(length = 5000)
+    private String content;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date timestamp;
+
+    @Column(name = "user_id")
+    private long userId;
+
+    private String username;
+
+    private String displayName;
+
+    private String userImage;
+
+    private String attachmentName;
+
+    private String attachmentFileType;
+
+    public FeedEntry(Hoax hoax) {
+        this.setHoax(hoax);
+        this.setContent(hoax.getContent());
+        this.setTimestamp(hoax.getTimestamp());
+        User user = hoax.getUser();
+        this.setUserId(user.getId());
+        this.setUsername(user.getUsername());
+        this.setDisplayName(user.getDisplayName());
+        this.setUserImage(user.getImage());
+        FileAttachment attachment = hoax.getAttachment();
+        if (attachment != null) {
+            this.setAttachmentName(attachment.getName());
+            this.setAttachmentFileType(attachment.getFileType());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.hoaxify.hoax;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+// Lecturas del feed sobre la proyeccion, sin joins con user ni file_attachment
+public interface FeedEntryRepository extends JpaRepository<FeedEntry, Long>, JpaSpecificationExecutor<FeedEntry> {
+
+    Page<FeedEntry> findByUserId(long userId, Pageable pageable);
+
+    // variantes Slice de findAll(pageable) y findByUserId: limit size+1 en lugar del count(*)
+    Slice<FeedEntry> findSliceBy(Pageable pageable);
+
+    Slice<FeedEntry> findSliceByUserId(long userId, Pageable pageable);
+
+    long countByUserId(long userId);
+
+    // keyset: WHERE id < ? ORDER BY id DESC LIMIT n+1, sin count(*)
+    Slice<FeedEntry> findByIdLessThan(long id, Pageable pageable);
+
+    Slice<FeedEntry> findByIdLessThanAndUserId(long id, long userId, Pageable pageable);
+
+    // solo ids, para NewHoaxCounter (se resuelven con el indice, sin leer las filas)
+    @Query("select f.id from FeedEntry f order by f.id desc")
+    List<Long> findNewestIds(Pageable pageable);
+
+    @Query("select f.id from FeedEntry f where f.userId = :userId order by f.id desc")
+    List<Long> findNewestIdsByUserId(@Param("userId") long userId, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("update FeedEntry f set f.displayName = :displayName, f.userImage = :image where f.userId = :userId")
+    int updateAuthor(@Param("userId") long userId, @Param("displayName") String displayName, @Param("image") String image);
+
+    // completa la proyeccion con los hoaxes que se crearon antes de que existiera la tabla
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = "insert into feed_entry (id, content, timestamp, user_id, username, display_name, " +
+            "user_image, attachment_name, attachment_file_type) " +
+            "select h.id, h.content, h.timestamp, u.id, u.username, u.display_name, u.image, f.name, f.file_type " +
+            "from hoax h join user u on u.id = h.user_id left join file_attachment f on f.hoax_id = h.id " +
+            "where not exists (select 1 from feed_entry e where e.id = h.id)")
+    int backfill();
+}
@@ -0,0 +1,98 @@
+package com.hoaxify.hoax;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+// Fotos inmutables de cada feed (global y por usuario) que usan HotFeedCache y NewHoaxCounter.
+// Los feeds de usuario estan en un Caffeine acotado, cuando se llena salen los menos usados.
+class FeedSnapshots<T> {
+
+    private final Snapshot<T> globalFeed = new Snapshot<>();
+
+    private final Cache<String, Snapshot<T>> userFeeds;
+
+    FeedSnapshots(long maxUsers) {
+        this.userFeeds = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .build();
+    }
+
+    T getGlobal(Supplier<T> loader) {
+        return globalFeed.get(loader);
+    }
+
+    T getUser(String username, Supplier<T> loader) {
+        Snapshot<T> userFeed = userFeeds.get(username, key -> new Snapshot<>());
+        try {
+            return userFeed.get(loader);
+        } catch (RuntimeException e) {
+            // el usuario no existe (o fallo la carga), no se deja una entrada vacia ocupando lugar
+            userFeeds.asMap().remove(username, userFeed);
+            throw e;
+        }
+    }
+
+    // el cambio se aplica al feed global y al del usuario si esta cargado
+    void apply(String username, UnaryOperator<T> change) {
+        globalFeed.apply(change);
+        Snapshot<T> userFeed = userFeeds.getIfPresent(username);
+        if (userFeed != null) {
+            userFeed.apply(change);
+        }
+    }
+
+    // para cambios que pueden tocar cualquier feed cargado, por ejemplo el autor de varios hoaxes
+    void applyAll(UnaryOperator<T> change) {
+        globalFeed.apply(change);
+        userFeeds.asMap().values().forEach(userFeed -> userFeed.apply(change));
+    }
+
+    void clear() {
+        globalFeed.reset();
+        userFeeds.invalidateAll();
+    }
+
+
+    // Estado de un feed: el valor y su version se reemplazan juntos con CAS, asi las lecturas nunca bloquean.
+    // Cada evento instala un State nuevo, una carga que se cruza con un evento falla el CAS y no se instala.
+    private static class Snapshot<T> {
+
+        private final AtomicReference<State<T>> state = new AtomicReference<>(new State<>(0, null));
+
+        T get(Supplier<T> loader) {
+            State<T> seen = state.get();
+            if (seen.value != null) {
+                return seen.value;
+            }
+            T loaded = loader.get();
+            state.compareAndSet(seen, new State<>(seen.version, loaded));
+            return loaded;
+        }
+
+        void apply(UnaryOperator<T> change) {
+            state.updateAndGet(current -> new State<>(current.version + 1,
+                    current.value == null ? null : change.apply(current.value)));
+        }
+
+        void reset() {
+            state.updateAndGet(current -> new State<>(current.version + 1, null));
+        }
+    }
+
+
+    private static class State<T> {
+
+        private final long version;
+
+        private final T value;
+
+        State(long version, T value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
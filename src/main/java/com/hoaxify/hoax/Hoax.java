@@ -3,6 +3,8 @@ package com.hoaxify.hoax;
 import com.hoaxify.file.FileAttachment;
 import com.hoaxify.user.User;
 import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
@@ -14,7 +16,9 @@ import java.util.Date;
 public class Hoax {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "hoax_seq")
+    @GenericGenerator(name = "hoax_seq", strategy = "com.hoaxify.shared.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "hoax_seq"))
     private Long id;
 
     @NotNull
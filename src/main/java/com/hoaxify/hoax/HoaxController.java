@@ -2,14 +2,19 @@ package com.hoaxify.hoax;
 
 import com.hoaxify.hoax.vm.HoaxVM;
 import com.hoaxify.shared.CurrentUser;
+import com.hoaxify.shared.CursorPage;
 import com.hoaxify.shared.GenericResponse;
+import com.hoaxify.shared.SlicePage;
 import com.hoaxify.user.User;
+import com.hoaxify.user.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
 import java.util.Collections;
@@ -23,6 +28,18 @@ public class HoaxController {
     @Autowired
     HoaxService hoaxService;
 
+    @Autowired
+    HoaxStreamService hoaxStreamService;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    HotFeedCache hotFeedCache;
+
+    @Autowired
+    NewHoaxCounter newHoaxCounter;
+
 
     @PostMapping("/hoaxes")
     public HoaxVM createHoax(@Valid @RequestBody Hoax hoax, @CurrentUser User user) {
@@ -32,35 +49,87 @@ public class HoaxController {
 
     @GetMapping("/hoaxes")
     public Page<HoaxVM> getAllHoaxes(Pageable pageable) {
-        return hoaxService.getAllHoaxes(pageable)
-                .map(HoaxVM::new);
+        return hotFeedCache.getFirstPage(null, pageable)
+                .orElseGet(() -> hoaxService.getAllHoaxes(pageable)
+                        .map(HoaxVM::new));
     }
 
 
     @GetMapping("/users/{username}/hoaxes")
     public Page<HoaxVM> getHoaxesOfUser(@PathVariable String username, Pageable pageable) {
-        return hoaxService.getHoaxesOfUser(username, pageable)
-                .map(HoaxVM::new);
+        return hotFeedCache.getFirstPage(username, pageable)
+                .orElseGet(() -> hoaxService.getHoaxesOfUser(username, pageable)
+                        .map(HoaxVM::new));
+    }
+
+    // ?totals=false: el scroll infinito no muestra totales, se responde sin el count(*)
+    @GetMapping(value = "/hoaxes", params = {"totals=false", "!cursor"})
+    public SlicePage<HoaxVM> getAllHoaxesSlice(Pageable pageable) {
+        return hotFeedCache.getFirstPage(null, pageable)
+                .map(SlicePage::of)
+                .orElseGet(() -> SlicePage.of(hoaxService.getAllHoaxesSlice(pageable)
+                        .map(HoaxVM::new)));
+    }
+
+
+    @GetMapping(value = "/users/{username}/hoaxes", params = {"totals=false", "!cursor"})
+    public SlicePage<HoaxVM> getHoaxesOfUserSlice(@PathVariable String username, Pageable pageable) {
+        return hotFeedCache.getFirstPage(username, pageable)
+                .map(SlicePage::of)
+                .orElseGet(() -> SlicePage.of(hoaxService.getHoaxesOfUserSlice(username, pageable)
+                        .map(HoaxVM::new)));
+    }
+
+    @GetMapping(value = "/hoaxes", params = "cursor")
+    public CursorPage<HoaxVM> getAllHoaxesByCursor(@RequestParam(required = false) String cursor, Pageable pageable) {
+        return toCursorPage(hoaxService.getHoaxesBeforeCursor(CursorPage.decodeCursor(cursor), null, pageable.getPageSize()));
+    }
+
+
+    @GetMapping(value = "/users/{username}/hoaxes", params = "cursor")
+    public CursorPage<HoaxVM> getHoaxesOfUserByCursor(@PathVariable String username,
+                                                      @RequestParam(required = false) String cursor, Pageable pageable) {
+        return toCursorPage(hoaxService.getHoaxesBeforeCursor(CursorPage.decodeCursor(cursor), username, pageable.getPageSize()));
+    }
+
+    @GetMapping("/hoaxes/stream")
+    public SseEmitter streamHoaxes() {
+        return hoaxStreamService.subscribe();
+    }
+
+
+    @GetMapping("/users/{username}/hoaxes/stream")
+    public SseEmitter streamHoaxesOfUser(@PathVariable String username) {
+        User inDB = userService.getByUsername(username);
+        return hoaxStreamService.subscribe(inDB.getUsername());
     }
 
     @GetMapping({"/hoaxes/{id:[0-9]+}", "/users/{username}/hoaxes/{id:[0-9]+}"})
     public ResponseEntity<?> getHoaxesRelative(@PathVariable long id, Pageable pageable,
                                                @PathVariable(required = false) String username,
                                                @RequestParam(name = "direction", defaultValue = "after") String direction,
-                                               @RequestParam(name = "count", defaultValue = "false", required = false) boolean count) {
+                                               @RequestParam(name = "count", defaultValue = "false", required = false) boolean count,
+                                               @RequestParam(name = "totals", defaultValue = "true") boolean totals) {
+        if (!direction.equalsIgnoreCase("after") && !totals) {
+            return ResponseEntity.ok(SlicePage.of(hoaxService.getOldHoaxesSlice(id, username, pageable)
+                    .map(HoaxVM::new)));
+        }
         if (!direction.equalsIgnoreCase("after")) {
             return ResponseEntity.ok(hoaxService.getOldHoaxes(id, username, pageable)
                     .map(HoaxVM::new));
         }
 
         if (count) {
-            long newHoaxCount = hoaxService.getNewHoaxesCount(id, username);
+            long newHoaxCount = newHoaxCounter.getNewHoaxesCount(id, username)
+                    .orElseGet(() -> hotFeedCache.getNewHoaxesCount(id, username)
+                            .orElseGet(() -> hoaxService.getNewHoaxesCount(id, username)));
             return ResponseEntity.ok(Collections.singletonMap("count", newHoaxCount));
         }
-        List<HoaxVM> newHoaxes = hoaxService.getNewHoaxes(id, username, pageable)
-                .stream()
-                .map(HoaxVM::new)
-                .collect(Collectors.toList());
+        List<HoaxVM> newHoaxes = hotFeedCache.getNewHoaxes(id, username, pageable.getSort())
+                .orElseGet(() -> hoaxService.getNewHoaxes(id, username, pageable)
+                        .stream()
+                        .map(HoaxVM::new)
+                        .collect(Collectors.toList()));
         return ResponseEntity.ok(newHoaxes);
     }
 
@@ -72,5 +141,15 @@ public class HoaxController {
         return new GenericResponse("Hoax is removed");
     }
 
+    private CursorPage<HoaxVM> toCursorPage(Slice<FeedEntry> slice) {
+        List<HoaxVM> content = slice.getContent().stream()
+                .map(HoaxVM::new)
+                .collect(Collectors.toList());
+        String nextCursor = null;
+        if (slice.hasNext() && !content.isEmpty()) {
+            nextCursor = CursorPage.encodeCursor(content.get(content.size() - 1).getId());
+        }
+        return new CursorPage<>(content, nextCursor, nextCursor == null);
+    }
 
 }
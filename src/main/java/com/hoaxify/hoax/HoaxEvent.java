@@ -0,0 +1,23 @@
+package com.hoaxify.hoax;
+
+import com.hoaxify.hoax.vm.HoaxVM;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Evento en memoria que publica HoaxService cuando se crea o se borra un hoax
+@Getter
+@AllArgsConstructor
+public class HoaxEvent {
+
+    public enum Type {
+        CREATED, DELETED
+    }
+
+    private final Type type;
+
+    private final HoaxVM hoax;
+
+    public String getUsername() {
+        return hoax.getUser().getUsername();
+    }
+}
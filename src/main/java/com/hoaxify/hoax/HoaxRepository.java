@@ -1,12 +1,7 @@
 package com.hoaxify.hoax;
 
-import com.hoaxify.user.User;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
-public interface HoaxRepository extends JpaRepository<Hoax, Long>, JpaSpecificationExecutor<Hoax> {
-
-    Page<Hoax> findByUser(User user, Pageable pageable);
+// Los feeds se leen de FeedEntryRepository, aca solo se guarda y se borra
+public interface HoaxRepository extends JpaRepository<Hoax, Long> {
 }
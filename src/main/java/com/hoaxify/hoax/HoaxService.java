@@ -1,25 +1,48 @@
 package com.hoaxify.hoax;
 
+import com.hoaxify.configuration.AppConfiguration;
 import com.hoaxify.file.FileAttachment;
 import com.hoaxify.file.FileAttachmentRepository;
 import com.hoaxify.file.FileService;
+import com.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.shared.AfterCommit;
 import com.hoaxify.user.User;
 import com.hoaxify.user.UserService;
+import com.hoaxify.user.UserUpdatedEvent;
+import io.micrometer.core.annotation.Timed;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.util.Date;
 import java.util.List;
 
 @Service
 public class HoaxService {
 
+    private static final Logger log = LoggerFactory.getLogger(HoaxService.class);
+
     @Autowired
     HoaxRepository hoaxRepository;
 
+    @Autowired
+    FeedEntryRepository feedEntryRepository;
+
     @Autowired
     UserService userService;
 
@@ -29,78 +52,173 @@ public class HoaxService {
     @Autowired
     FileService fileService;
 
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
+    // se crea la primera vez que se usa, solo con hoaxify.hoax-write-behind
+    @Lazy
+    @Autowired
+    HoaxWriteBehind hoaxWriteBehind;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
 
+    @Timed("hoaxify.hoax.save")
+    @Transactional
     public Hoax save(User user, Hoax hoax){
         hoax.setTimestamp(new Date());
-        hoax.setUser(user);
+        // el principal de un token solo trae id y username, el HoaxVM necesita el usuario completo
+        hoax.setUser(userService.getByUsername(user.getUsername()));
 
+        FileAttachment attachment = null;
         if (hoax.getAttachment() != null){
-            FileAttachment inDB = fileAttachmentRepository.findById(hoax.getAttachment().getId()).get();
-            inDB.setHoax(hoax);
-
-            hoax.setAttachment(inDB);
+            attachment = fileAttachmentRepository.findById(hoax.getAttachment().getId()).get();
+            hoax.setAttachment(attachment);
+        }
+        if (appConfiguration.isHoaxWriteBehind()) {
+            // el insert queda para el proximo lote, el id se reserva ahora para devolverlo
+            hoax.setId(reserveId(hoax));
+            if (hoaxWriteBehind.offer(hoax)) {
+                return hoax;
+            }
+            hoax.setId(null);
+        }
+        if (attachment != null){
+            attachment.setHoax(hoax);
         }
-        return hoaxRepository.save(hoax);
+        Hoax saved = hoaxRepository.save(hoax);
+        FeedEntry entry = feedEntryRepository.save(new FeedEntry(saved));
+        eventPublisher.publishEvent(new HoaxEvent(HoaxEvent.Type.CREATED, new HoaxVM(entry)));
+        return saved;
+    }
+
+    // usa el generador de ids de la entidad, el mismo que usaria persist
+    private Long reserveId(Hoax hoax) {
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        return (Long) session.getEntityPersister(null, hoax).getIdentifierGenerator().generate(session, hoax);
     }
 
-    public Page<Hoax> getAllHoaxes(Pageable pageable) {
-        return hoaxRepository.findAll(pageable);
+    // el feed se lee de la proyeccion (feed_entry), una sola tabla sin joins
+    @Timed("hoaxify.hoax.feed")
+    public Page<FeedEntry> getAllHoaxes(Pageable pageable) {
+        return feedEntryRepository.findAll(pageable);
     }
 
-    public Page<Hoax> getHoaxesOfUser(String username, Pageable pageable) {
+    @Timed("hoaxify.hoax.feed")
+    public Page<FeedEntry> getHoaxesOfUser(String username, Pageable pageable) {
         User inDB = userService.getByUsername(username);
-        return hoaxRepository.findByUser(inDB, pageable);
+        return feedEntryRepository.findByUserId(inDB.getId(), pageable);
     }
 
-    public Page<Hoax> getOldHoaxes(long id, String username, Pageable pageable) {
-        Specification<Hoax> spec = Specification.where(idLessThan(id));
+    @Timed("hoaxify.hoax.feed")
+    public Page<FeedEntry> getOldHoaxes(long id, String username, Pageable pageable) {
+        Specification<FeedEntry> spec = Specification.where(idLessThan(id));
         if (username != null){
             User inDB = userService.getByUsername(username);
             spec = spec.and(userIs(inDB));
         }
-        return hoaxRepository.findAll(spec, pageable);
+        return feedEntryRepository.findAll(spec, pageable);
+    }
+
+    // las mismas tres lecturas sin count(*), para los clientes que piden ?totals=false
+    @Timed("hoaxify.hoax.feed")
+    public Slice<FeedEntry> getAllHoaxesSlice(Pageable pageable) {
+        return feedEntryRepository.findSliceBy(pageable);
+    }
+
+    @Timed("hoaxify.hoax.feed")
+    public Slice<FeedEntry> getHoaxesOfUserSlice(String username, Pageable pageable) {
+        User inDB = userService.getByUsername(username);
+        return feedEntryRepository.findSliceByUserId(inDB.getId(), pageable);
+    }
+
+    @Timed("hoaxify.hoax.feed")
+    public Slice<FeedEntry> getOldHoaxesSlice(long id, String username, Pageable pageable) {
+        if (username != null){
+            User inDB = userService.getByUsername(username);
+            return feedEntryRepository.findByIdLessThanAndUserId(id, inDB.getId(), pageable);
+        }
+        return feedEntryRepository.findByIdLessThan(id, pageable);
     }
 
 
-    public List<Hoax> getNewHoaxes(long id, String username, Pageable pageable) {
-        Specification<Hoax> spec = Specification.where(idGreaterThan(id));
+    @Timed("hoaxify.hoax.feed")
+    public List<FeedEntry> getNewHoaxes(long id, String username, Pageable pageable) {
+        Specification<FeedEntry> spec = Specification.where(idGreaterThan(id));
         if (username != null){
             User inDB = userService.getByUsername(username);
             spec = spec.and(userIs(inDB));
         }
-        return hoaxRepository.findAll(spec, pageable.getSort());
+        return feedEntryRepository.findAll(spec, pageable.getSort());
     }
 
+    @Timed("hoaxify.hoax.feed")
+    public Slice<FeedEntry> getHoaxesBeforeCursor(long cursor, String username, int size) {
+        Pageable pageable = PageRequest.of(0, size, Sort.by(Sort.Direction.DESC, "id"));
+        if (username != null){
+            User inDB = userService.getByUsername(username);
+            return feedEntryRepository.findByIdLessThanAndUserId(cursor, inDB.getId(), pageable);
+        }
+        return feedEntryRepository.findByIdLessThan(cursor, pageable);
+    }
+
+    @Timed("hoaxify.hoax.count")
     public long getNewHoaxesCount(long id, String username) {
-        Specification<Hoax> spec = Specification.where(idGreaterThan(id));
+        Specification<FeedEntry> spec = Specification.where(idGreaterThan(id));
         if (username != null){
             User inDB = userService.getByUsername(username);
             spec = spec.and(userIs(inDB));
         }
-        return hoaxRepository.count(spec);
+        return feedEntryRepository.count(spec);
     }
 
 
     //METHODS SPECIFICATIONS***********************************************************
     /********************************************************************************/
 
-    private Specification<Hoax> userIs(User user){
-        return (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("user"), user);
+    private Specification<FeedEntry> userIs(User user){
+        return (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("userId"), user.getId());
     }
 
-    private Specification<Hoax> idLessThan(long id){
+    private Specification<FeedEntry> idLessThan(long id){
         return ((root, query, criteriaBuilder) -> criteriaBuilder.lessThan(root.get("id"), id));
     }
 
-    private Specification<Hoax> idGreaterThan(long id){
+    private Specification<FeedEntry> idGreaterThan(long id){
         return ((root, query, criteriaBuilder) -> criteriaBuilder.greaterThan(root.get("id"), id));
     }
 
+    @Timed("hoaxify.hoax.delete")
+    @Transactional
     public void deleteHoax(long id) {
         Hoax hoax = hoaxRepository.getById(id);
-        if (hoax.getAttachment() != null){
-            fileService.deleteAttachmentImage(hoax.getAttachment().getName());
-        }
+        HoaxVM deleted = new HoaxVM(hoax);
+        String attachmentName = hoax.getAttachment() != null ? hoax.getAttachment().getName() : null;
+        // la fila de feed_entry la borra la base (on delete cascade), puede no existir si el hoax es anterior al backfill
         hoaxRepository.deleteById(id);
+        // el archivo va despues del commit: el conteo de referencias ya no incluye la fila y un rollback no lo pierde
+        if (attachmentName != null){
+            AfterCommit.run(() -> fileService.deleteAttachmentImage(attachmentName));
+        }
+        eventPublisher.publishEvent(new HoaxEvent(HoaxEvent.Type.DELETED, deleted));
+    }
+
+    // corre dentro de la transaccion de UserService.update, la proyeccion cambia junto con el usuario
+    @EventListener
+    public void onUserUpdated(UserUpdatedEvent event) {
+        User user = event.getUser();
+        feedEntryRepository.updateAuthor(user.getId(), user.getDisplayName(), user.getImage());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillFeed() {
+        int inserted = feedEntryRepository.backfill();
+        if (inserted > 0) {
+            log.info("Feed projection backfilled with {} hoaxes", inserted);
+        }
     }
 }
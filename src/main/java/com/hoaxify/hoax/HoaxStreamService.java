@@ -0,0 +1,219 @@
+package com.hoaxify.hoax;
+
+import com.hoaxify.configuration.AppConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Los eventos se mandan desde un pool acotado (hoaxify.hoax-stream-threads) y no desde el hilo que publica,
+// que es el request de POST /hoaxes o el hilo de HoaxWriteBehind: un cliente lento no frena la creacion de hoaxes.
+// Cada suscriptor recibe sus eventos en orden; si acumula hoax-stream-max-pending-events sin leer se lo desconecta.
+@Service
+public class HoaxStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(HoaxStreamService.class);
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
+    private final List<Subscriber> feedSubscribers = new CopyOnWriteArrayList<>();
+
+    private final Map<String, List<Subscriber>> userSubscribers = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+
+
+    @PostConstruct
+    void init() {
+        // a lo sumo una tarea encolada por suscriptor, la cola solo se llena con muchisimos clientes
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(appConfiguration.getHoaxStreamThreads(),
+                appConfiguration.getHoaxStreamThreads(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(appConfiguration.getHoaxStreamQueueCapacity()), task -> {
+                    Thread thread = new Thread(task, "hoax-stream");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+    }
+
+    public SseEmitter subscribe() {
+        Subscriber subscriber = new Subscriber(createEmitter());
+        feedSubscribers.add(subscriber);
+        return register(subscriber, () -> feedSubscribers.remove(subscriber));
+    }
+
+    public SseEmitter subscribe(String username) {
+        Subscriber subscriber = new Subscriber(createEmitter());
+        // el add va dentro de compute: con computeIfAbsent(..).add, removeUserSubscriber podia sacar la lista vacia
+        // del mapa en el medio y el suscriptor quedaba en una lista huerfana que nunca recibe eventos
+        userSubscribers.compute(username, (key, subscribers) -> {
+            List<Subscriber> updated = subscribers != null ? subscribers : new CopyOnWriteArrayList<>();
+            updated.add(subscriber);
+            return updated;
+        });
+        return register(subscriber, () -> removeUserSubscriber(username, subscriber));
+    }
+
+    // se avisa despues del commit para que el cliente ya encuentre el hoax si lo pide
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHoaxEvent(HoaxEvent event) {
+        feedSubscribers.forEach(subscriber -> subscriber.offer(event));
+
+        List<Subscriber> subscribersOfUser = userSubscribers.get(event.getUsername());
+        if (subscribersOfUser != null) {
+            subscribersOfUser.forEach(subscriber -> subscriber.offer(event));
+        }
+    }
+
+    public int getSubscriberCount(String username) {
+        List<Subscriber> subscribers = userSubscribers.get(username);
+        return subscribers != null ? subscribers.size() : 0;
+    }
+
+    // cierra todas las conexiones abiertas, por ejemplo al bajar la aplicacion
+    @PreDestroy
+    public void completeAll() {
+        feedSubscribers.forEach(Subscriber::close);
+        feedSubscribers.clear();
+
+        userSubscribers.values().forEach(subscribers -> subscribers.forEach(Subscriber::close));
+        userSubscribers.clear();
+    }
+
+    @PreDestroy
+    public void shutdownExecutor() {
+        executor.shutdown();
+    }
+
+    private SseEmitter createEmitter() {
+        return new SseEmitter(appConfiguration.getHoaxStreamTimeout());
+    }
+
+    private SseEmitter register(Subscriber subscriber, Runnable unsubscribe) {
+        SseEmitter emitter = subscriber.emitter;
+        subscriber.unsubscribe = unsubscribe;
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+
+        // el primer envio hace commit de los headers, asi el cliente sabe que ya esta suscrito
+        try {
+            emitter.send(SseEmitter.event().comment("subscribed"));
+        } catch (IOException e) {
+            unsubscribe.run();
+        }
+        return emitter;
+    }
+
+    private void removeUserSubscriber(String username, Subscriber subscriber) {
+        userSubscribers.computeIfPresent(username, (key, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    private SseEmitter.SseEventBuilder toSseEvent(HoaxEvent event) {
+        if (event.getType() == HoaxEvent.Type.DELETED) {
+            return SseEmitter.event()
+                    .name("deleted")
+                    .data(Collections.singletonMap("id", event.getHoax().getId()));
+        }
+        return SseEmitter.event()
+                .id(String.valueOf(event.getHoax().getId()))
+                .name("created")
+                .data(event.getHoax());
+    }
+
+
+    // Una conexion con su cola de eventos pendientes. Solo una tarea del pool la vacia a la vez (draining),
+    // asi los eventos salen en orden y un cliente trabado ocupa como mucho un hilo.
+    private class Subscriber {
+
+        private final SseEmitter emitter;
+
+        private final Queue<HoaxEvent> pending = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger pendingCount = new AtomicInteger();
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private volatile Runnable unsubscribe = () -> {
+        };
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(HoaxEvent event) {
+            if (pendingCount.incrementAndGet() > appConfiguration.getHoaxStreamMaxPendingEvents()) {
+                log.warn("Hoax stream client is not keeping up, closing the connection");
+                close();
+                return;
+            }
+            pending.add(event);
+            schedule();
+        }
+
+        void close() {
+            unsubscribe.run();
+            pending.clear();
+            emitter.complete();
+        }
+
+        private void schedule() {
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                log.warn("Hoax stream executor is full, closing the connection");
+                close();
+            }
+        }
+
+        private void drain() {
+            HoaxEvent event;
+            while ((event = pending.poll()) != null) {
+                pendingCount.decrementAndGet();
+                try {
+                    // el builder no se puede reutilizar entre emitters
+                    emitter.send(toSseEvent(event));
+                } catch (IOException | IllegalStateException e) {
+                    // el cliente se desconecto
+                    unsubscribe.run();
+                    pending.clear();
+                    return;
+                }
+            }
+            draining.set(false);
+            // un evento que llego justo despues del ultimo poll
+            if (!pending.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.hoaxify.hoax;
+
+import com.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoax.vm.HoaxVM;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+// Modo write-behind de HoaxService.save (hoaxify.hoax-write-behind): el request reserva el id y encola el
+// hoax, y un solo hilo los escribe en lotes JDBC (hoax, feed_entry y el hoax_id del adjunto) cuando junta
+// hoax-write-behind-batch-size o pasan hoax-write-behind-max-latency-millis desde el primero del lote.
+// El evento CREATED sale despues del commit del lote, hasta entonces el hoax no aparece en los feeds.
+// Si la cola se llena offer devuelve false y el hoax se guarda en el request como siempre.
+@Lazy
+@Component
+public class HoaxWriteBehind {
+
+    private static final Logger log = LoggerFactory.getLogger(HoaxWriteBehind.class);
+
+    private static final String INSERT_HOAX = "insert into hoax (id, content, timestamp, user_id) values (?, ?, ?, ?)";
+
+    private static final String INSERT_FEED_ENTRY = "insert into feed_entry (id, content, timestamp, user_id, username, " +
+            "display_name, user_image, attachment_name, attachment_file_type) values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_AUTHORS = "select id, display_name, image from user where id in (%s)";
+
+    private static final String LINK_ATTACHMENT = "update file_attachment set hoax_id = ? where id = ?";
+
+    AppConfiguration appConfiguration;
+
+    JdbcTemplate jdbcTemplate;
+
+    ApplicationEventPublisher eventPublisher;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final BlockingQueue<Pending> queue;
+
+    private final ExecutorService flusher;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private volatile boolean stopped;
+
+    private final Timer flushTimer;
+
+    private final Counter droppedCounter;
+
+    public HoaxWriteBehind(AppConfiguration appConfiguration, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+        this.appConfiguration = appConfiguration;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(appConfiguration.getHoaxWriteBehindQueueCapacity());
+        this.flusher = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "hoax-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushTimer = meterRegistry.timer("hoaxify.hoax.write-behind.flush");
+        droppedCounter = Counter.builder("hoaxify.hoax.write-behind.dropped").register(meterRegistry);
+        meterRegistry.gauge("hoaxify.hoax.write-behind.queue", queue, BlockingQueue::size);
+    }
+
+    // el hoax ya tiene id, usuario, fecha y adjunto cargados
+    public boolean offer(Hoax hoax) {
+        if (stopped) {
+            return false;
+        }
+        FeedEntry entry = new FeedEntry(hoax);
+        entry.setId(hoax.getId());
+        entry.setHoax(null);
+        Long attachmentId = hoax.getAttachment() != null ? hoax.getAttachment().getId() : null;
+        if (!queue.offer(new Pending(entry, attachmentId))) {
+            return false;
+        }
+        if (started.compareAndSet(false, true)) {
+            flusher.execute(this::run);
+        }
+        return true;
+    }
+
+    // termina de escribir lo que quedo en la cola antes de cerrar. Los ids ya se devolvieron a los clientes,
+    // si el hilo no termina a tiempo lo que quede se escribe aca mismo
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stopped = true;
+        flusher.shutdown();
+        if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Hoax write-behind did not finish in time, flushing {} pending hoaxes on shutdown", queue.size());
+        }
+        List<Pending> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        if (!pending.isEmpty()) {
+            flush(pending);
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>();
+        try {
+            while (!stopped || !queue.isEmpty()) {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(appConfiguration.getHoaxWriteBehindMaxLatencyMillis());
+                while (batch.size() < appConfiguration.getHoaxWriteBehindBatchSize()) {
+                    // se espera de a 100ms para que un cierre no quede esperando a que se complete el lote
+                    long wait = Math.min(deadline - System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(100));
+                    Pending next = wait > 0 && !stopped ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next != null) {
+                        batch.add(next);
+                    } else if (stopped || deadline - System.nanoTime() <= 0) {
+                        break;
+                    }
+                }
+                flushTimer.record(() -> flush(batch));
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            log.warn("Hoax write-behind interrupted with {} hoaxes pending", queue.size() + batch.size());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        List<Pending> saved = batch;
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+        } catch (RuntimeException e) {
+            // un hoax invalido (por ejemplo el usuario se borro) no tiene que tirar el lote entero
+            log.warn("Batch insert of {} hoaxes failed, retrying one by one", batch.size(), e);
+            saved = new ArrayList<>();
+            for (Pending pending : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insert(Collections.singletonList(pending)));
+                    saved.add(pending);
+                } catch (RuntimeException single) {
+                    droppedCounter.increment();
+                    log.error("Hoax {} could not be saved and was dropped", pending.entry.getId(), single);
+                }
+            }
+        }
+        for (Pending pending : saved) {
+            eventPublisher.publishEvent(new HoaxEvent(HoaxEvent.Type.CREATED, new HoaxVM(pending.entry)));
+        }
+    }
+
+    private void insert(List<Pending> batch) {
+        refreshAuthors(batch);
+        jdbcTemplate.batchUpdate(INSERT_HOAX, batch.stream()
+                .map(pending -> new Object[]{pending.entry.getId(), pending.entry.getContent(),
+                        new Timestamp(pending.entry.getTimestamp().getTime()), pending.entry.getUserId()})
+                .collect(Collectors.toList()));
+        jdbcTemplate.batchUpdate(INSERT_FEED_ENTRY, batch.stream()
+                .map(pending -> new Object[]{pending.entry.getId(), pending.entry.getContent(),
+                        new Timestamp(pending.entry.getTimestamp().getTime()), pending.entry.getUserId(),
+                        pending.entry.getUsername(), pending.entry.getDisplayName(), pending.entry.getUserImage(),
+                        pending.entry.getAttachmentName(), pending.entry.getAttachmentFileType()})
+                .collect(Collectors.toList()));
+        List<Object[]> attachments = batch.stream()
+                .filter(pending -> pending.attachmentId != null)
+                .map(pending -> new Object[]{pending.entry.getId(), pending.attachmentId})
+                .collect(Collectors.toList());
+        if (!attachments.isEmpty()) {
+            jdbcTemplate.batchUpdate(LINK_ATTACHMENT, attachments);
+        }
+    }
+
+    // el nombre y la imagen se leen al escribir: si el usuario cambio mientras el hoax estaba en la cola,
+    // updateAuthor no encontro esta fila y el evento llevaria los datos viejos
+    private void refreshAuthors(List<Pending> batch) {
+        List<Long> userIds = batch.stream()
+                .map(pending -> pending.entry.getUserId())
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Long, String[]> authors = new HashMap<>();
+        jdbcTemplate.query(String.format(SELECT_AUTHORS, String.join(", ", Collections.nCopies(userIds.size(), "?"))),
+                rs -> {
+                    authors.put(rs.getLong("id"), new String[]{rs.getString("display_name"), rs.getString("image")});
+                }, userIds.toArray());
+        for (Pending pending : batch) {
+            String[] author = authors.get(pending.entry.getUserId());
+            if (author != null) {
+                pending.entry.setDisplayName(author[0]);
+                pending.entry.setUserImage(author[1]);
+            }
+        }
+    }
+
+
+    private static class Pending {
+
+        private final FeedEntry entry;
+
+        private final Long attachmentId;
+
+        Pending(FeedEntry entry, Long attachmentId) {
+            this.entry = entry;
+            this.attachmentId = attachmentId;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.hoaxify.hoax;
+
+import com.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.user.User;
+import com.hoaxify.user.UserService;
+import com.hoaxify.user.UserUpdatedEvent;
+import com.hoaxify.user.vm.UserVM;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+// Ventana en memoria con los N hoaxes mas nuevos de cada feed (global y por usuario).
+// Responde la primera pagina y las consultas "after id" sin ir a la base de datos.
+@Service
+public class HotFeedCache {
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
+    @Autowired
+    FeedEntryRepository feedEntryRepository;
+
+    @Autowired
+    UserService userService;
+
+    private FeedSnapshots<Window> feeds;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+
+    @PostConstruct
+    void init() {
+        feeds = new FeedSnapshots<>(appConfiguration.getHotFeedMaxUsers());
+    }
+
+    public Optional<Page<HoaxVM>> getFirstPage(String username, Pageable pageable) {
+        if (pageable.getPageNumber() != 0 || !isNewestFirst(pageable.getSort())) {
+            return miss();
+        }
+        Window window = getWindow(username);
+        if (window == null || !window.covers(pageable.getPageSize())) {
+            return miss();
+        }
+        hits.increment();
+        List<HoaxVM> content = window.hoaxes.subList(0, Math.min(pageable.getPageSize(), window.hoaxes.size()));
+        return Optional.of(new PageImpl<>(content, pageable, window.total));
+    }
+
+    public Optional<List<HoaxVM>> getNewHoaxes(long id, String username, Sort sort) {
+        if (!isNewestFirst(sort)) {
+            return miss();
+        }
+        Window window = getWindow(username);
+        if (window == null || !window.coversNewerThan(id)) {
+            return miss();
+        }
+        hits.increment();
+        return Optional.of(window.newerThan(id));
+    }
+
+    public OptionalLong getNewHoaxesCount(long id, String username) {
+        Window window = getWindow(username);
+        if (window == null || !window.coversNewerThan(id)) {
+            misses.increment();
+            return OptionalLong.empty();
+        }
+        hits.increment();
+        return OptionalLong.of(window.newerThan(id).size());
+    }
+
+    // despues del commit, asi una lectura concurrente no recarga la ventana con datos sin confirmar
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHoaxEvent(HoaxEvent event) {
+        UnaryOperator<Window> change = event.getType() == HoaxEvent.Type.CREATED
+                ? window -> window.with(event.getHoax(), getWindowSize())
+                : window -> window.without(event.getHoax().getId());
+
+        feeds.apply(event.getUsername(), change);
+    }
+
+    // los HoaxVM guardan una copia del UserVM, se reemplaza en los hoaxes de ese usuario sin descartar las ventanas
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserUpdated(UserUpdatedEvent event) {
+        UserVM author = new UserVM(event.getUser());
+        feeds.applyAll(window -> window.withAuthor(author));
+    }
+
+    public void clear() {
+        feeds.clear();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private Window getWindow(String username) {
+        if (getWindowSize() <= 0) {
+            return null;
+        }
+        if (username == null) {
+            return feeds.getGlobal(this::loadGlobalWindow);
+        }
+        return feeds.getUser(username, () -> loadUserWindow(username));
+    }
+
+    private Window loadGlobalWindow() {
+        List<HoaxVM> hoaxes = toVM(feedEntryRepository.findByIdLessThan(Long.MAX_VALUE, newestFirst()).getContent());
+        return new Window(hoaxes, feedEntryRepository.count());
+    }
+
+    private Window loadUserWindow(String username) {
+        User inDB = userService.getByUsername(username);
+        List<HoaxVM> hoaxes = toVM(feedEntryRepository.findByIdLessThanAndUserId(Long.MAX_VALUE, inDB.getId(), newestFirst()).getContent());
+        return new Window(hoaxes, feedEntryRepository.countByUserId(inDB.getId()));
+    }
+
+    private Pageable newestFirst() {
+        return PageRequest.of(0, getWindowSize(), Sort.by(Sort.Direction.DESC, "id"));
+    }
+
+    private int getWindowSize() {
+        return appConfiguration.getHotFeedSize();
+    }
+
+    private <T> Optional<T> miss() {
+        misses.increment();
+        return Optional.empty();
+    }
+
+    private static List<HoaxVM> toVM(List<FeedEntry> hoaxes) {
+        return hoaxes.stream().map(HoaxVM::new).collect(Collectors.toList());
+    }
+
+    private static boolean isNewestFirst(Sort sort) {
+        List<Sort.Order> orders = sort.toList();
+        return orders.size() == 1
+                && orders.get(0).getProperty().equals("id")
+                && orders.get(0).isDescending();
+    }
+
+
+    // Foto inmutable de los hoaxes mas nuevos (id desc) y del total del feed
+    private static class Window {
+
+        private final List<HoaxVM> hoaxes;
+
+        private final long total;
+
+        Window(List<HoaxVM> hoaxes, long total) {
+            this.hoaxes = Collections.unmodifiableList(hoaxes);
+            this.total = total;
+        }
+
+        boolean isExhaustive() {
+            return hoaxes.size() >= total;
+        }
+
+        boolean covers(int size) {
+            return hoaxes.size() >= size || isExhaustive();
+        }
+
+        boolean coversNewerThan(long id) {
+            return isExhaustive() || (!hoaxes.isEmpty() && hoaxes.get(hoaxes.size() - 1).getId() <= id);
+        }
+
+        List<HoaxVM> newerThan(long id) {
+            List<HoaxVM> newer = new ArrayList<>();
+            for (HoaxVM hoax : hoaxes) {
+                if (hoax.getId() <= id) {
+                    break;
+                }
+                newer.add(hoax);
+            }
+            return newer;
+        }
+
+        Window with(HoaxVM created, int maxSize) {
+            List<HoaxVM> updated = new ArrayList<>(hoaxes.size() + 1);
+            boolean inserted = false;
+            for (HoaxVM hoax : hoaxes) {
+                if (hoax.getId() == created.getId()) {
+                    return this;
+                }
+                if (!inserted && created.getId() > hoax.getId()) {
+                    updated.add(created);
+                    inserted = true;
+                }
+                updated.add(hoax);
+            }
+            if (!inserted) {
+                if (!isExhaustive()) {
+                    // es mas viejo que la ventana, solo cambia el total
+                    return new Window(hoaxes, total + 1);
+                }
+                updated.add(created);
+            }
+            if (updated.size() > maxSize) {
+                updated = updated.subList(0, maxSize);
+            }
+            return new Window(new ArrayList<>(updated), total + 1);
+        }
+
+        Window withAuthor(UserVM author) {
+            boolean changed = false;
+            List<HoaxVM> updated = new ArrayList<>(hoaxes.size());
+            for (HoaxVM hoax : hoaxes) {
+                if (hoax.getUser() != null && hoax.getUser().getId() == author.getId()) {
+                    updated.add(copyWithAuthor(hoax, author));
+                    changed = true;
+                } else {
+                    updated.add(hoax);
+                }
+            }
+            return changed ? new Window(updated, total) : this;
+        }
+
+        // los HoaxVM ya entregados pueden estar serializandose, no se modifican
+        private static HoaxVM copyWithAuthor(HoaxVM hoax, UserVM author) {
+            HoaxVM copy = new HoaxVM();
+            copy.setId(hoax.getId());
+            copy.setContent(hoax.getContent());
+            copy.setDate(hoax.getDate());
+            copy.setUser(author);
+            copy.setAttachment(hoax.getAttachment());
+            return copy;
+        }
+
+        Window without(long id) {
+            List<HoaxVM> updated = hoaxes.stream()
+                    .filter(hoax -> hoax.getId() != id)
+                    .collect(Collectors.toList());
+            return new Window(updated, Math.max(total - 1, updated.size()));
+        }
+    }
+}
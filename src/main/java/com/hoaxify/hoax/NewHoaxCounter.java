@@ -0,0 +1,144 @@
+package com.hoaxify.hoax;
+
+import com.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.user.User;
+import com.hoaxify.user.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.function.UnaryOperator;
+
+// Contador del badge de hoaxes nuevos: guarda los ids mas nuevos de cada feed (global y por usuario)
+// ordenados, y "cuantos hay despues de X" es una busqueda binaria sin ir a la base de datos.
+// Se guardan hasta hoaxify.new-hoax-counter-size ids por feed; si X es mas viejo que todos se responde
+// ese tope. Es aproximado: un hoax recien confirmado se cuenta cuando llega su evento.
+// Con hoaxify.new-hoax-count-exact=true no responde y el conteo sale de HotFeedCache o de la base.
+@Service
+public class NewHoaxCounter {
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
+    @Autowired
+    FeedEntryRepository feedEntryRepository;
+
+    @Autowired
+    UserService userService;
+
+    private FeedSnapshots<Ids> feeds;
+
+
+    @PostConstruct
+    void init() {
+        feeds = new FeedSnapshots<>(appConfiguration.getNewHoaxCounterMaxUsers());
+    }
+
+    public OptionalLong getNewHoaxesCount(long id, String username) {
+        if (appConfiguration.isNewHoaxCountExact() || getSize() <= 0) {
+            return OptionalLong.empty();
+        }
+        if (username == null) {
+            return OptionalLong.of(feeds.getGlobal(this::loadGlobalIds).countNewerThan(id));
+        }
+        return OptionalLong.of(feeds.getUser(username, () -> loadUserIds(username)).countNewerThan(id));
+    }
+
+    // despues del commit, igual que HotFeedCache
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHoaxEvent(HoaxEvent event) {
+        long id = event.getHoax().getId();
+        UnaryOperator<Ids> change = event.getType() == HoaxEvent.Type.CREATED
+                ? ids -> ids.with(id, getSize())
+                : ids -> ids.without(id);
+
+        feeds.apply(event.getUsername(), change);
+    }
+
+    public void clear() {
+        feeds.clear();
+    }
+
+    private Ids loadGlobalIds() {
+        return Ids.load(feedEntryRepository.findNewestIds(newestFirst()), getSize());
+    }
+
+    private Ids loadUserIds(String username) {
+        User inDB = userService.getByUsername(username);
+        return Ids.load(feedEntryRepository.findNewestIdsByUserId(inDB.getId(), newestFirst()), getSize());
+    }
+
+    private Pageable newestFirst() {
+        return PageRequest.of(0, getSize());
+    }
+
+    private int getSize() {
+        return appConfiguration.getNewHoaxCounterSize();
+    }
+
+
+    // Ids de menor a mayor. complete: estan todos los del feed, si no solo los size mas nuevos
+    private static class Ids {
+
+        private final long[] ids;
+
+        private final boolean complete;
+
+        Ids(long[] ids, boolean complete) {
+            this.ids = ids;
+            this.complete = complete;
+        }
+
+        static Ids load(List<Long> newestFirst, int size) {
+            long[] ids = new long[newestFirst.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[ids.length - 1 - i] = newestFirst.get(i);
+            }
+            return new Ids(ids, ids.length < size);
+        }
+
+        long countNewerThan(long id) {
+            int index = Arrays.binarySearch(ids, id);
+            int firstNewer = index >= 0 ? index + 1 : -index - 1;
+            // con firstNewer == 0 y la lista recortada puede haber mas, se responde el tope
+            return ids.length - firstNewer;
+        }
+
+        Ids with(long id, int size) {
+            int index = Arrays.binarySearch(ids, id);
+            if (index >= 0) {
+                return this;
+            }
+            int insertAt = -index - 1;
+            if (insertAt == 0 && !complete) {
+                // mas viejo que todos los guardados, no cambia ningun conteo que se pueda responder
+                return this;
+            }
+            long[] updated = new long[ids.length + 1];
+            System.arraycopy(ids, 0, updated, 0, insertAt);
+            updated[insertAt] = id;
+            System.arraycopy(ids, insertAt, updated, insertAt + 1, ids.length - insertAt);
+            if (updated.length > size) {
+                return new Ids(Arrays.copyOfRange(updated, updated.length - size, updated.length), false);
+            }
+            return new Ids(updated, complete);
+        }
+
+        Ids without(long id) {
+            int index = Arrays.binarySearch(ids, id);
+            if (index < 0) {
+                return this;
+            }
+            long[] updated = new long[ids.length - 1];
+            System.arraycopy(ids, 0, updated, 0, index);
+            System.arraycopy(ids, index + 1, updated, index, ids.length - index - 1);
+            return new Ids(updated, complete);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.hoaxify.hoax.vm;
 
 import com.hoaxify.file.FileAttachmentVM;
+import com.hoaxify.hoax.FeedEntry;
 import com.hoaxify.hoax.Hoax;
 import com.hoaxify.user.vm.UserVM;
 import lombok.Data;
@@ -25,4 +26,22 @@ public class HoaxVM {
             this.setAttachment(new FileAttachmentVM(hoax.getAttachment()));
         }
     }
+
+    public HoaxVM(FeedEntry entry) {
+        this.setId(entry.getId());
+        this.setContent(entry.getContent());
+        this.setDate(entry.getTimestamp().getTime());
+        UserVM userVM = new UserVM();
+        userVM.setId(entry.getUserId());
+        userVM.setUsername(entry.getUsername());
+        userVM.setDisplayName(entry.getDisplayName());
+        userVM.setImage(entry.getUserImage());
+        this.setUser(userVM);
+        if (entry.getAttachmentName() != null){
+            FileAttachmentVM attachmentVM = new FileAttachmentVM();
+            attachmentVM.setName(entry.getAttachmentName());
+            attachmentVM.setFileType(entry.getAttachmentFileType());
+            this.setAttachment(attachmentVM);
+        }
+    }
 }
@@ -0,0 +1,74 @@
+package com.hoaxify.shared;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.hoaxify.error.BadRequestException;
+import org.apache.commons.io.input.CharSequenceInputStream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Imagen en base64 tal como llega en el JSON. Nunca se decodifica entera en memoria: la validacion
+// decodifica solo los primeros bytes para detectar el tipo y el guardado decodifica mientras escribe.
+public class Base64Image implements ImageContent {
+
+    private final String base64;
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public Base64Image(String base64) {
+        this.base64 = base64;
+    }
+
+    @JsonValue
+    public String getBase64() {
+        return base64;
+    }
+
+    // lanza IllegalArgumentException si el comienzo no es base64 valido
+    @Override
+    public byte[] readHeader(int length) {
+        // cada 4 caracteres son 3 bytes, se corta en un multiplo de 4 para no dejar un bloque a medias
+        int chars = Math.min(base64.length(), (length + 2) / 3 * 4);
+        return Base64.getDecoder().decode(base64.substring(0, chars));
+    }
+
+    // la validacion solo vio el comienzo: un caracter invalido mas adelante aparece recien al copiar,
+    // y se informa como 400 para que el guardado se corte y el request no termine bien
+    @Override
+    public InputStream openStream() {
+        return new InvalidContentInputStream(Base64.getDecoder().wrap(new CharSequenceInputStream(base64, StandardCharsets.US_ASCII)));
+    }
+
+
+    private static class InvalidContentInputStream extends FilterInputStream {
+
+        InvalidContentInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                throw invalid(e);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            try {
+                return super.read(b, off, len);
+            } catch (IOException e) {
+                throw invalid(e);
+            }
+        }
+
+        private static BadRequestException invalid(IOException e) {
+            return new BadRequestException("Invalid base64 image: " + e.getMessage());
+        }
+    }
+}
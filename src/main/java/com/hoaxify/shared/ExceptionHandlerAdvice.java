@@ -2,6 +2,7 @@ package com.hoaxify.shared;
 
 import com.hoaxify.error.ApiError;
 import org.springframework.http.HttpStatus;
+import org.springframework.validation.BindException;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -18,9 +19,10 @@ public class ExceptionHandlerAdvice {
 
 
     // maneja los errores de valitadionErrors
-    @ExceptionHandler({MethodArgumentNotValidException.class})
+    // BindException cubre los VM que no vienen en el body, como los formularios multipart
+    @ExceptionHandler({MethodArgumentNotValidException.class, BindException.class})
     @ResponseStatus(HttpStatus.BAD_REQUEST)
-    ApiError handleValidationException(MethodArgumentNotValidException exception, HttpServletRequest request){
+    ApiError handleValidationException(BindException exception, HttpServletRequest request){
         ApiError apiError = new ApiError(400, "Validation error", request.getServletPath());
 
         BindingResult result = exception.getBindingResult();
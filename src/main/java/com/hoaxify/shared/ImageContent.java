@@ -0,0 +1,13 @@
+package com.hoaxify.shared;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Imagen recibida del cliente, venga en base64 dentro del JSON o como archivo multipart. La validacion
+// lee solo el comienzo y el guardado la copia como stream, ninguna de las dos la carga entera.
+public interface ImageContent {
+
+    byte[] readHeader(int length) throws IOException;
+
+    InputStream openStream() throws IOException;
+}
@@ -0,0 +1,31 @@
+package com.hoaxify.shared;
+
+import org.apache.commons.io.IOUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+public class MultipartImage implements ImageContent {
+
+    private final MultipartFile file;
+
+    public MultipartImage(MultipartFile file) {
+        this.file = file;
+    }
+
+    @Override
+    public byte[] readHeader(int length) throws IOException {
+        byte[] header = new byte[length];
+        try (InputStream in = file.getInputStream()) {
+            int read = IOUtils.read(in, header);
+            return read == length ? header : Arrays.copyOf(header, read);
+        }
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        return file.getInputStream();
+    }
+}
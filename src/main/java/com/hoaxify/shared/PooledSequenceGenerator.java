@@ -0,0 +1,28 @@
+package com.hoaxify.shared;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+// Ids de Hoax, User y FileAttachment: cada llamada a la secuencia reserva un bloque de
+// hoaxify.id-allocation-size ids que se reparten en memoria (pooled-lo), en lugar de un round trip por insert.
+// La secuencia tiene que avanzar de a ese mismo tamano (V3__pooled_id_sequences, PersistenceConfiguration lo revisa)
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    // lo pasa application.yml en spring.jpa.properties
+    public static final String ALLOCATION_SIZE = "hoaxify.id_allocation_size";
+
+    private static final String DEFAULT_ALLOCATION_SIZE = "50";
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Object allocationSize = serviceRegistry.getService(ConfigurationService.class).getSettings().get(ALLOCATION_SIZE);
+        params.setProperty(INCREMENT_PARAM, allocationSize != null ? allocationSize.toString() : DEFAULT_ALLOCATION_SIZE);
+        params.setProperty(OPT_PARAM, "pooled-lo");
+        super.configure(type, params, serviceRegistry);
+    }
+}
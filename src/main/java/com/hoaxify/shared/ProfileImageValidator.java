@@ -5,20 +5,25 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
-import java.util.Base64;
+import java.io.IOException;
 
-public class ProfileImageValidator implements ConstraintValidator<ProfileImage, String> {
+public class ProfileImageValidator implements ConstraintValidator<ProfileImage, ImageContent> {
 
     @Autowired
     FileService fileService;
 
     @Override
-    public boolean isValid(String value, ConstraintValidatorContext context) {
+    public boolean isValid(ImageContent value, ConstraintValidatorContext context) {
         if(value == null){
             return true;
         }
-        byte[] decodedBytes = Base64.getDecoder().decode(value);
-        String fileType = fileService.detectType(decodedBytes);
+        // para el tipo alcanzan los magic bytes, no hace falta decodificar toda la imagen
+        String fileType;
+        try {
+            fileType = fileService.detectType(value.readHeader(FileService.TYPE_DETECTION_BYTES));
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
 
         return fileType.equalsIgnoreCase("image/png") || fileType.equalsIgnoreCase("image/jpeg");
     }
@@ -0,0 +1,34 @@
+package com.hoaxify.shared;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+// Pagina sin totales (?totals=false): solo dice si hay siguiente, asi alcanza con traer size+1 filas
+// y no hace falta el select count(*) de Page
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlicePage<T> {
+
+    private List<T> content;
+
+    private int number;
+
+    private int size;
+
+    private boolean first;
+
+    private boolean last;
+
+    private boolean hasNext;
+
+
+    public static <T> SlicePage<T> of(Slice<T> slice) {
+        return new SlicePage<>(slice.getContent(), slice.getNumber(), slice.getSize(),
+                slice.isFirst(), slice.isLast(), slice.hasNext());
+    }
+}
@@ -1,16 +1,30 @@
 package com.hoaxify.user;
 
+import com.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.configuration.TokenService;
 import com.hoaxify.shared.CurrentUser;
-import com.hoaxify.user.vm.UserVM;
+import com.hoaxify.user.vm.LoginVM;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
 public class LoginController {
 
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    TokenService tokenService;
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
     @PostMapping("/api/1.0/login")
-    public UserVM handleLogin(@CurrentUser User loggedInUser){
-        return new UserVM(loggedInUser);
+    public LoginVM handleLogin(@CurrentUser User loggedInUser){
+        // el principal de un token solo trae id y username
+        User user = userService.getByUsername(loggedInUser.getUsername());
+        String token = appConfiguration.isTokenAuthEnabled() ? tokenService.createToken(user) : null;
+        return new LoginVM(user, token);
     }
 }
-
@@ -2,6 +2,8 @@ package com.hoaxify.user;
 
 import com.hoaxify.hoax.Hoax;
 import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -21,7 +23,9 @@ public class User implements UserDetails {
     private static final long serialVersionUID = 4074374728582967483L;
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "user_seq")
+    @GenericGenerator(name = "user_seq", strategy = "com.hoaxify.shared.PooledSequenceGenerator",
+            parameters = @Parameter(name = "sequence_name", value = "user_seq"))
     private Long id;
 
     @NotNull(message = "{hoaxify.constraints.username.NotNull.message}")
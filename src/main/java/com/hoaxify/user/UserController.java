@@ -1,12 +1,16 @@
 package com.hoaxify.user;
 
+import com.hoaxify.file.FileIoExecutor;
 import com.hoaxify.shared.CurrentUser;
 import com.hoaxify.shared.GenericResponse;
+import com.hoaxify.shared.SlicePage;
+import com.hoaxify.user.vm.ProfileImageUploadVM;
 import com.hoaxify.user.vm.UserUpdateVM;
 import com.hoaxify.user.vm.UserVM;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,6 +23,9 @@ public class UserController {
     @Autowired
     UserService userService;
 
+    @Autowired
+    FileIoExecutor fileIoExecutor;
+
     @PostMapping("/users")
     public GenericResponse createUser(@Valid @RequestBody User user){
         userService.save(user);
@@ -31,6 +38,12 @@ public class UserController {
                 .map(UserVM::new);
     }
 
+    @GetMapping(value = "/users", params = "totals=false")
+    public SlicePage<UserVM> getUsersSlice(@CurrentUser User loggedInUser, Pageable page){
+        return SlicePage.of(userService.getUsersSlice(loggedInUser, page)
+                .map(UserVM::new));
+    }
+
     @GetMapping("/users/{username}")
     public UserVM getUserByName(@PathVariable String username){
         User user = userService.getByUsername(username);
@@ -40,9 +53,20 @@ public class UserController {
 
     @PutMapping("/users/{id:[0-9]+}")
     @PreAuthorize("#id == principal.id")
-    public UserVM updateUser(@PathVariable long id, @Valid @RequestBody(required = false) UserUpdateVM userUpdate){
-        User updated = userService.update(id, userUpdate);
-        return new UserVM(updated);
+    public Object updateUser(@PathVariable long id, @Valid @RequestBody(required = false) UserUpdateVM userUpdate){
+        // solo la imagen de perfil escribe a disco
+        if (userUpdate == null || userUpdate.getImage() == null) {
+            return new UserVM(userService.update(id, userUpdate));
+        }
+        return fileIoExecutor.execute(() -> new UserVM(userService.update(id, userUpdate)));
+    }
+
+
+    // la misma imagen que acepta updateUser pero como archivo multipart, sin base64 ni JSON
+    @PostMapping(value = "/users/{id:[0-9]+}/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("#id == principal.id")
+    public Object updateUserImage(@PathVariable long id, @Valid ProfileImageUploadVM upload){
+        return fileIoExecutor.execute(() -> new UserVM(userService.updateImage(id, upload.getImage())));
     }
 
 }
@@ -3,14 +3,23 @@ package com.hoaxify.user;
 import com.hoaxify.UserRepository;
 import com.hoaxify.error.NotFoundException;
 import com.hoaxify.file.FileService;
+import com.hoaxify.file.ProfileImageVariantService;
+import com.hoaxify.shared.AfterCommit;
+import com.hoaxify.shared.ImageContent;
 import com.hoaxify.user.vm.UserUpdateVM;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
 @Service
 public class UserService {
@@ -24,11 +33,20 @@ public class UserService {
     @Autowired
     FileService fileService;
 
+    @Autowired
+    ProfileImageVariantService profileImageVariantService;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Timed("hoaxify.user.save")
+    @CacheEvict(cacheNames = "users", key = "#user.username")
     public User save(User user) {
         user.setPassword(passwordEncoder.encode(user.getPassword()));
         return userRepository.save(user);
     }
 
+    @Timed("hoaxify.user.list")
     public Page<User> getUsers(User loggedInUser, Pageable pageable) {
         if (loggedInUser != null) {
             return userRepository.findByUsernameNot(loggedInUser.getUsername(), pageable);
@@ -36,28 +54,69 @@ public class UserService {
         return userRepository.findAll(pageable);
     }
 
+    @Timed("hoaxify.user.list")
+    public Slice<User> getUsersSlice(User loggedInUser, Pageable pageable) {
+        if (loggedInUser != null) {
+            return userRepository.findSliceByUsernameNot(loggedInUser.getUsername(), pageable);
+        }
+        return userRepository.findSliceBy(pageable);
+    }
+
+    // sale del cache "users": un User nuevo en cada llamada, no administrado. Para modificar se usa findForUpdate
     public User getByUsername(String username) {
-        User inDB = userRepository.findByUsername(username);
+        UserSnapshot inDB = userRepository.findSnapshotByUsername(username);
         if (inDB == null){
             throw new NotFoundException(username + " not found");
         }
-        return inDB;
+        return inDB.toUser();
     }
 
+    @Timed("hoaxify.user.update")
+    @CacheEvict(cacheNames = "users", key = "#result.username")
+    @Transactional
     public User update(long id, UserUpdateVM userUpdate) {
-        User inDB = userRepository.getById(id);
+        User inDB = findForUpdate(id);
         inDB.setDisplayName(userUpdate.getDisplayName());
+        return saveWithImage(inDB, userUpdate.getImage());
+    }
+
+    @Timed("hoaxify.user.update-image")
+    @CacheEvict(cacheNames = "users", key = "#result.username")
+    @Transactional
+    public User updateImage(long id, ImageContent image) {
+        return saveWithImage(findForUpdate(id), image);
+    }
 
-        if (userUpdate.getImage() != null){
+    // findById y no getById: con hoaxify.file-io-async corre fuera del request y no hay sesion abierta
+    private User findForUpdate(long id) {
+        return userRepository.findById(id).orElseThrow(() -> new NotFoundException("User " + id + " not found"));
+    }
+
+    private User saveWithImage(User inDB, ImageContent image) {
+        String oldImage = null;
+        if (image != null){
+            // si la imagen no se pudo guardar entera el request falla y la transaccion vuelve atras
             String savedImageName;
             try {
-                savedImageName = fileService.saveProfileImage(userUpdate.getImage());
-                fileService.deleteProfileImage(inDB.getImage());
-                inDB.setImage(savedImageName);
+                savedImageName = fileService.saveProfileImage(image);
             } catch (IOException e) {
-                e.printStackTrace();
+                throw new UncheckedIOException(e);
             }
+            oldImage = inDB.getImage();
+            inDB.setImage(savedImageName);
+        }
+        User updated = userRepository.save(inDB);
+        // la imagen anterior se borra despues del commit para que el conteo de referencias ya no incluya a este usuario
+        // y un rollback no deje la fila apuntando a un archivo borrado;
+        // con nombres por contenido la misma imagen vuelve con el mismo nombre y no hay que borrarla
+        if (oldImage != null && !oldImage.equals(updated.getImage())) {
+            String replaced = oldImage;
+            AfterCommit.run(() -> fileService.deleteProfileImage(replaced));
+        }
+        if (image != null && updated.getImage() != null) {
+            profileImageVariantService.generateVariantsAsync(updated.getImage());
         }
-        return userRepository.save(inDB);
+        eventPublisher.publishEvent(new UserUpdatedEvent(updated));
+        return updated;
     }
 }
@@ -0,0 +1,30 @@
+package com.hoaxify.user;
+
+import lombok.Value;
+
+// Lo que guarda el cache "users": copia inmutable de las columnas del usuario, sin estado de JPA ni la coleccion
+// lazy de hoaxes, que se puede compartir entre hilos. Quien necesita un User recibe uno nuevo con toUser().
+@Value
+public class UserSnapshot {
+
+    Long id;
+
+    String username;
+
+    String password;
+
+    String displayName;
+
+    String image;
+
+    // User suelto (no administrado), el que lo recibe puede modificarlo sin tocar el cache
+    public User toUser() {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setPassword(password);
+        user.setDisplayName(displayName);
+        user.setImage(image);
+        return user;
+    }
+}
@@ -0,0 +1,12 @@
+package com.hoaxify.user;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Se publica cuando cambian los datos visibles de un usuario (displayName, image)
+@Getter
+@AllArgsConstructor
+public class UserUpdatedEvent {
+
+    private final User user;
+}
@@ -0,0 +1,22 @@
+package com.hoaxify.user.vm;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.hoaxify.user.User;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class LoginVM extends UserVM {
+
+    // sin token-auth-enabled no hay token y el campo no se manda; image sigue saliendo aunque sea null
+    @JsonInclude(value = JsonInclude.Include.NON_NULL)
+    private String token;
+
+    public LoginVM(User user, String token) {
+        super(user);
+        this.setToken(token);
+    }
+}
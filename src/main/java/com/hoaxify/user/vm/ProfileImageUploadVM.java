@@ -0,0 +1,15 @@
+package com.hoaxify.user.vm;
+
+import com.hoaxify.shared.MultipartImage;
+import com.hoaxify.shared.ProfileImage;
+import lombok.Data;
+
+import javax.validation.constraints.NotNull;
+
+@Data
+public class ProfileImageUploadVM {
+
+    @NotNull
+    @ProfileImage
+    private MultipartImage image;
+}
@@ -1,5 +1,6 @@
 package com.hoaxify.user.vm;
 
+import com.hoaxify.shared.Base64Image;
 import com.hoaxify.shared.ProfileImage;
 import lombok.Data;
 
@@ -14,5 +15,5 @@ public class UserUpdateVM {
     private String displayName;
 
     @ProfileImage
-    private String image;
+    private Base64Image image;
 }
@@ -0,0 +1,47 @@
+-- Esquema tal como lo generaba Hibernate con ddl-auto. Con "if not exists" tambien se puede correr
+-- sobre una base creada por Hibernate (spring.flyway.baseline-on-migrate con baseline-version 0).
+create sequence if not exists hibernate_sequence start with 1 increment by 1;
+
+create table if not exists user (
+    id bigint not null,
+    display_name varchar(255),
+    image varchar(255),
+    password varchar(255),
+    username varchar(255),
+    primary key (id)
+);
+
+create table if not exists hoax (
+    id bigint not null,
+    content varchar(5000),
+    timestamp timestamp,
+    user_id bigint,
+    primary key (id)
+);
+
+create table if not exists file_attachment (
+    id bigint not null,
+    date timestamp,
+    file_type varchar(255),
+    name varchar(255),
+    hoax_id bigint,
+    primary key (id)
+);
+
+create table if not exists feed_entry (
+    id bigint not null,
+    attachment_file_type varchar(255),
+    attachment_name varchar(255),
+    content varchar(5000),
+    display_name varchar(255),
+    timestamp timestamp,
+    user_id bigint,
+    user_image varchar(255),
+    username varchar(255),
+    primary key (id)
+);
+
+-- mismos nombres que genera Hibernate para no duplicar las claves en bases existentes
+alter table hoax add constraint if not exists FKprlu9i28mxmbs2bnvd7dadfnt foreign key (user_id) references user;
+alter table file_attachment add constraint if not exists FKm4s6ke3jlye084brffy7ngs7t foreign key (hoax_id) references hoax;
+alter table feed_entry add constraint if not exists FK2q74w69j7lpu07hn44en3w86y foreign key (id) references hoax on delete cascade;
@@ -0,0 +1,18 @@
+-- Indices de las consultas del feed, del login y de la limpieza de adjuntos. QueryPlanTest revisa
+-- que cada metodo de repositorio los use en lugar de recorrer la tabla.
+
+-- FeedEntryRepository.findByUserId, findByIdLessThanAndUserId y las specs idLessThan/idGreaterThan + userIs
+create index if not exists idx_feed_entry_user_id on feed_entry (user_id, id);
+
+-- UserRepository.findByUsername (login y cada request autenticado sin cache)
+create index if not exists idx_user_username on user (username);
+
+-- UserRepository.countByImage, antes de borrar una imagen de perfil compartida
+create index if not exists idx_user_image on user (image);
+
+-- FileAttachmentRepository.findByDateBeforeAndHoaxIsNull(AndIdGreaterThan), limpieza de huerfanos.
+-- hoax_id va primero: "is null" es una igualdad y el rango por fecha se busca solo entre los huerfanos
+create index if not exists idx_file_attachment_hoax_id_date on file_attachment (hoax_id, date);
+
+-- FileAttachmentRepository.countByName, antes de borrar un adjunto compartido
+create index if not exists idx_file_attachment_name on file_attachment (name);
@@ -0,0 +1,8 @@
+-- Una secuencia por tabla en lugar de hibernate_sequence. Avanzan de a ${id-allocation-size}
+-- (hoaxify.id-allocation-size): Hibernate pide un valor y usa ese bloque de ids sin volver a la base.
+-- Arrancan despues del mayor id de cada tabla para no chocar con los que repartio hibernate_sequence.
+create sequence if not exists user_seq start with (select coalesce(max(id), 0) + 1 from user) increment by ${id-allocation-size};
+create sequence if not exists hoax_seq start with (select coalesce(max(id), 0) + 1 from hoax) increment by ${id-allocation-size};
+create sequence if not exists file_attachment_seq start with (select coalesce(max(id), 0) + 1 from file_attachment) increment by ${id-allocation-size};
+
+drop sequence if exists hibernate_sequence;
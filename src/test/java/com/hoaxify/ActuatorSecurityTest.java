@@ -0,0 +1,76 @@
+package com.hoaxify;
+
+import com.hoaxify.user.UserService;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.support.BasicAuthenticationInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static com.hoaxify.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Sin management.server.port el actuator comparte el puerto de la aplicacion y solo health queda abierto
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureMetrics
+public class ActuatorSecurityTest {
+
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @After
+    public void cleanup() {
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        userRepository.deleteAll();
+    }
+
+
+    @Test
+    public void getPrometheus_whenAnonymous_receiveUnauthorized() {
+        ResponseEntity<String> response = testRestTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+
+    @Test
+    public void getPrometheus_whenUserIsAuthenticated_receiveForbidden() {
+        userService.save(createValidUser("user1"));
+        testRestTemplate.getRestTemplate().getInterceptors().add(new BasicAuthenticationInterceptor("user1", "P4ssword"));
+
+        ResponseEntity<String> response = testRestTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+    }
+
+
+    @Test
+    public void getMetrics_whenAnonymous_receiveUnauthorized() {
+        ResponseEntity<String> response = testRestTemplate.getForEntity("/actuator/metrics", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+
+    @Test
+    public void getHealth_whenAnonymous_receiveOk() {
+        ResponseEntity<String> response = testRestTemplate.getForEntity("/actuator/health", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+}
@@ -0,0 +1,226 @@
+package com.hoaxify;
+
+import com.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.error.BadRequestException;
+import com.hoaxify.error.PayloadTooLargeException;
+import com.hoaxify.file.BlobStore;
+import com.hoaxify.file.InMemoryBlobStore;
+import com.hoaxify.file.LocalBlobStore;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assume.assumeTrue;
+
+// El mismo contrato se prueba contra cada implementacion de BlobStore
+@RunWith(Parameterized.class)
+public class BlobStoreTest {
+
+    private static final String FOLDER = "attachments";
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> stores() {
+        return Arrays.asList(new Object[][]{{"local"}, {"memory"}});
+    }
+
+    @Parameterized.Parameter
+    public String type;
+
+    AppConfiguration appConfiguration;
+
+    BlobStore blobStore;
+
+    @Before
+    public void init() {
+        appConfiguration = new AppConfiguration();
+        appConfiguration.setUploadPath("uploads-test");
+        blobStore = type.equals("local") ? new LocalBlobStore(appConfiguration) : new InMemoryBlobStore();
+        new File(appConfiguration.getFullAttachmentsPath()).mkdirs();
+    }
+
+
+    @After
+    public void cleanup() throws IOException {
+        FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
+    }
+
+
+    @Test
+    public void write_whenContentIsWritten_openReturnsSameBytes() throws IOException {
+        blobStore.write(FOLDER, "blob-1", stream("hello blob"), 100);
+
+        try (InputStream in = blobStore.open(FOLDER, "blob-1")) {
+            assertThat(IOUtils.toString(in, StandardCharsets.UTF_8)).isEqualTo("hello blob");
+        }
+    }
+
+
+    @Test
+    public void write_whenContentIsWritten_statReturnsLength() throws IOException {
+        long written = blobStore.write(FOLDER, "blob-1", stream("hello blob"), 100);
+
+        assertThat(written).isEqualTo(10);
+        assertThat(blobStore.stat(FOLDER, "blob-1").get().getLength()).isEqualTo(10);
+    }
+
+
+    @Test
+    public void write_whenContentIsLargerThanMaxBytes_throwsAndLeavesNothingStored() {
+        assertThatThrownBy(() -> blobStore.write(FOLDER, "blob-1", stream("hello blob"), 9))
+                .isInstanceOf(PayloadTooLargeException.class);
+        assertThat(blobStore.exists(FOLDER, "blob-1")).isFalse();
+    }
+
+
+    @Test
+    public void write_whenContentIsExactlyMaxBytes_stores() throws IOException {
+        blobStore.write(FOLDER, "blob-1", stream("hello blob"), 10);
+
+        assertThat(blobStore.exists(FOLDER, "blob-1")).isTrue();
+    }
+
+
+    @Test
+    public void stat_whenBlobDoesNotExist_returnsEmpty() {
+        assertThat(blobStore.stat(FOLDER, "missing")).isEmpty();
+    }
+
+
+    @Test
+    public void open_whenBlobDoesNotExist_throwsNoSuchFile() {
+        assertThatThrownBy(() -> blobStore.open(FOLDER, "missing")).isInstanceOf(NoSuchFileException.class);
+    }
+
+
+    @Test
+    public void transferTo_whenRangeIsRequested_writesOnlyThatRange() throws IOException {
+        blobStore.write(FOLDER, "blob-1", stream("hello blob"), 100);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long transferred = blobStore.transferTo(FOLDER, "blob-1", 6, 4, Channels.newChannel(out));
+
+        assertThat(transferred).isEqualTo(4);
+        assertThat(out.toString("UTF-8")).isEqualTo("blob");
+    }
+
+
+    @Test
+    public void delete_whenBlobExists_removesItAndReturnsBytesFreed() throws IOException {
+        blobStore.write(FOLDER, "blob-1", stream("hello blob"), 100);
+
+        assertThat(blobStore.delete(FOLDER, "blob-1")).isEqualTo(10);
+        assertThat(blobStore.exists(FOLDER, "blob-1")).isFalse();
+    }
+
+
+    @Test
+    public void delete_whenBlobDoesNotExist_returnsZero() throws IOException {
+        assertThat(blobStore.delete(FOLDER, "missing")).isEqualTo(0);
+    }
+
+
+    @Test
+    public void rename_whenTargetDoesNotExist_movesContent() throws IOException {
+        blobStore.write(FOLDER, "temp", stream("hello blob"), 100);
+
+        blobStore.rename(FOLDER, "temp", "final");
+
+        assertThat(blobStore.exists(FOLDER, "temp")).isFalse();
+        assertThat(blobStore.stat(FOLDER, "final").get().getLength()).isEqualTo(10);
+    }
+
+
+    @Test
+    public void rename_whenTargetAlreadyExists_keepsTargetAndRemovesSource() throws IOException {
+        blobStore.write(FOLDER, "final", stream("first"), 100);
+        blobStore.write(FOLDER, "temp", stream("second one"), 100);
+
+        blobStore.rename(FOLDER, "temp", "final");
+
+        assertThat(blobStore.exists(FOLDER, "temp")).isFalse();
+        assertThat(blobStore.stat(FOLDER, "final").get().getLength()).isEqualTo(5);
+    }
+
+
+    @Test
+    public void write_whenLocalStore_storesFileInShardedFolder() throws IOException {
+        assumeTrue(type.equals("local"));
+        LocalBlobStore localBlobStore = (LocalBlobStore) blobStore;
+        blobStore.write(FOLDER, "blob-1", stream("hello blob"), 100);
+
+        Path path = localBlobStore.shardedPath(FOLDER, "blob-1");
+        assertThat(path.toFile()).exists();
+        assertThat(path.getParent().getParent().getParent())
+                .isEqualTo(new File(appConfiguration.getFullAttachmentsPath()).toPath().toAbsolutePath().normalize());
+        assertThat(blobStore.getLocalPath(FOLDER, "blob-1")).contains(path);
+    }
+
+
+    @Test
+    public void open_whenLocalStoreHasFileInLegacyFlatFolder_readsIt() throws IOException {
+        assumeTrue(type.equals("local"));
+        FileUtils.writeStringToFile(new File(appConfiguration.getFullAttachmentsPath() + "/legacy"), "old layout", StandardCharsets.UTF_8);
+
+        try (InputStream in = blobStore.open(FOLDER, "legacy")) {
+            assertThat(IOUtils.toString(in, StandardCharsets.UTF_8)).isEqualTo("old layout");
+        }
+        assertThat(blobStore.delete(FOLDER, "legacy")).isEqualTo(10);
+        assertThat(new File(appConfiguration.getFullAttachmentsPath() + "/legacy")).doesNotExist();
+    }
+
+
+    @Test
+    public void write_whenNameLeavesFolder_throwsBadRequest() {
+        assumeTrue(type.equals("local"));
+
+        assertThatThrownBy(() -> blobStore.write(FOLDER, "..", stream("hello blob"), 100))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+
+    @Test
+    public void write_whenStreamFailsAfterSomeBytes_throwsAndKeepsNoBlob() {
+        InputStream failing = new SequenceInputStream(new ByteArrayInputStream(new byte[100_000]), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("broken stream");
+            }
+        });
+
+        assertThatThrownBy(() -> blobStore.write(FOLDER, "blob-1", failing, Long.MAX_VALUE))
+                .isInstanceOf(IOException.class);
+        assertThat(blobStore.exists(FOLDER, "blob-1")).isFalse();
+    }
+
+
+
+
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+    private InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+}
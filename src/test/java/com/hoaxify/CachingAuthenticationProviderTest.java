@@ -0,0 +1,108 @@
+package com.hoaxify;
+
+import com.hoaxify.configuration.CachingAuthenticationProvider;
+import com.hoaxify.user.User;
+import com.hoaxify.user.UserUpdatedEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static com.hoaxify.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachingAuthenticationProviderTest {
+
+    PasswordEncoder passwordEncoder;
+
+    UserDetailsService userDetailsService;
+
+    CachingAuthenticationProvider provider;
+
+    User user;
+
+    @Before
+    public void init() {
+        passwordEncoder = spy(new BCryptPasswordEncoder(4));
+        userDetailsService = mock(UserDetailsService.class);
+        provider = new CachingAuthenticationProvider(userDetailsService, passwordEncoder, 60, 100);
+
+        user = createValidUser("user1");
+        user.setPassword(passwordEncoder.encode("P4ssword"));
+        when(userDetailsService.loadUserByUsername("user1")).thenReturn(user);
+    }
+
+
+    @Test
+    public void authenticate_whenSameCredentialsAreUsedTwice_passwordIsVerifiedOnce() {
+        Authentication first = provider.authenticate(token("P4ssword"));
+        Authentication second = provider.authenticate(token("P4ssword"));
+
+        assertThat(first.isAuthenticated()).isTrue();
+        assertThat(second.isAuthenticated()).isTrue();
+        verify(passwordEncoder, times(1)).matches(any(), anyString());
+    }
+
+
+    @Test
+    public void authenticate_whenPasswordIsWrongAfterSuccessfulLogin_throwsBadCredentials() {
+        provider.authenticate(token("P4ssword"));
+
+        assertThatThrownBy(() -> provider.authenticate(token("wrong-password")))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+
+    @Test
+    public void authenticate_whenStoredPasswordHashChanges_passwordIsVerifiedAgain() {
+        provider.authenticate(token("P4ssword"));
+        user.setPassword(passwordEncoder.encode("P4ssword"));
+
+        provider.authenticate(token("P4ssword"));
+        verify(passwordEncoder, times(2)).matches(any(), anyString());
+    }
+
+
+    @Test
+    public void onUserUpdated_whenUserHasCachedCredentials_removesThem() {
+        provider.authenticate(token("P4ssword"));
+
+        provider.onUserUpdated(new UserUpdatedEvent(user));
+        assertThat(provider.getVerifiedCredentials().asMap()).isEmpty();
+    }
+
+
+    @Test
+    public void authenticate_whenCredentialsAreCached_cacheKeyDoesNotContainPassword() {
+        provider.authenticate(token("P4ssword"));
+
+        assertThat(provider.getVerifiedCredentials().asMap().keySet())
+                .hasSize(1)
+                .allMatch(key -> !key.contains("P4ssword") && !key.contains("user1"));
+    }
+
+
+
+
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+    private UsernamePasswordAuthenticationToken token(String password) {
+        return new UsernamePasswordAuthenticationToken("user1", password);
+    }
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+}
@@ -0,0 +1,194 @@
+package com.hoaxify;
+
+import com.hoaxify.file.FileAttachment;
+import com.hoaxify.hoax.FeedEntry;
+import com.hoaxify.hoax.FeedEntryRepository;
+import com.hoaxify.hoax.Hoax;
+import com.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.user.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Date;
+import java.util.List;
+
+import static com.hoaxify.TestUtil.createValidHoax;
+import static com.hoaxify.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+public class FeedEntryRepositoryTest {
+
+    @Autowired
+    TestEntityManager testEntityManager;
+
+    @Autowired
+    FeedEntryRepository feedEntryRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+
+    User user;
+
+    User otherUser;
+
+    @Before
+    public void init() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        user = testEntityManager.persist(createValidUser("user1"));
+        otherUser = testEntityManager.persist(createValidUser("user2"));
+    }
+
+
+    @Test
+    public void findByIdLessThan_whenEntriesExist_mapsSliceToHoaxVMWithoutLoadingHoaxOrUser() {
+        for (int i = 0; i < 5; i++) {
+            persistWithEntry(user, true);
+        }
+        flushAndClear();
+
+        List<HoaxVM> hoaxes = feedEntryRepository.findByIdLessThan(Long.MAX_VALUE, newestFirst(3)).map(HoaxVM::new).getContent();
+
+        assertThat(hoaxes).hasSize(3);
+        assertThat(hoaxes.get(0).getUser().getUsername()).isEqualTo("user1");
+        assertThat(hoaxes.get(0).getAttachment().getFileType()).isEqualTo("image/png");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityStatistics(Hoax.class.getName()).getLoadCount()).isZero();
+        assertThat(statistics.getEntityStatistics(User.class.getName()).getLoadCount()).isZero();
+    }
+
+
+    @Test
+    public void findByIdLessThanAndUserId_whenEntriesOfSeveralUsersExist_returnsOnlyThatUser() {
+        persistWithEntry(user, false);
+        persistWithEntry(otherUser, false);
+        persistWithEntry(user, false);
+        flushAndClear();
+
+        List<FeedEntry> entries = feedEntryRepository.findByIdLessThanAndUserId(Long.MAX_VALUE, user.getId(), newestFirst(10)).getContent();
+
+        assertThat(entries).hasSize(2).allMatch(entry -> entry.getUserId() == user.getId());
+    }
+
+
+    @Test
+    public void findSliceByUserId_whenMoreEntriesThanPageSize_runsSingleSelectWithoutCount() {
+        for (int i = 0; i < 4; i++) {
+            persistWithEntry(user, false);
+        }
+        persistWithEntry(otherUser, false);
+        flushAndClear();
+
+        Slice<FeedEntry> slice = feedEntryRepository.findSliceByUserId(user.getId(), newestFirst(3));
+
+        assertThat(slice.getContent()).hasSize(3);
+        assertThat(slice.hasNext()).isTrue();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+
+    @Test
+    public void updateAuthor_whenUserChangesDisplayNameAndImage_updatesAllEntriesOfThatUser() {
+        persistWithEntry(user, false);
+        persistWithEntry(user, false);
+        persistWithEntry(otherUser, false);
+        flushAndClear();
+
+        int updated = feedEntryRepository.updateAuthor(user.getId(), "new-display", "new-image");
+        testEntityManager.clear();
+
+        assertThat(updated).isEqualTo(2);
+        assertThat(feedEntryRepository.findAll()).filteredOn(entry -> entry.getUserId() == user.getId())
+                .allMatch(entry -> entry.getDisplayName().equals("new-display") && entry.getUserImage().equals("new-image"));
+        assertThat(feedEntryRepository.findAll()).filteredOn(entry -> entry.getUserId() == otherUser.getId())
+                .allMatch(entry -> entry.getDisplayName().equals(otherUser.getDisplayName()));
+    }
+
+
+    @Test
+    public void deleteHoax_whenHoaxHasEntry_entryIsRemovedByCascade() {
+        Hoax hoax = persistWithEntry(user, false);
+        flushAndClear();
+
+        testEntityManager.getEntityManager().createQuery("delete from Hoax h where h.id = :id")
+                .setParameter("id", hoax.getId())
+                .executeUpdate();
+
+        assertThat(feedEntryRepository.count()).isZero();
+    }
+
+
+    @Test
+    public void backfill_whenHoaxesHaveNoEntry_createsMissingEntriesOnly() {
+        persistWithEntry(user, false);
+        Hoax withoutEntry = createValidHoax();
+        withoutEntry.setTimestamp(new Date());
+        withoutEntry.setUser(otherUser);
+        testEntityManager.persist(withoutEntry);
+        persistAttachment(withoutEntry);
+        flushAndClear();
+
+        int inserted = feedEntryRepository.backfill();
+
+        assertThat(inserted).isEqualTo(1);
+        FeedEntry entry = feedEntryRepository.findById(withoutEntry.getId()).get();
+        assertThat(entry.getUsername()).isEqualTo("user2");
+        assertThat(entry.getAttachmentName()).isEqualTo("attachment");
+    }
+
+
+
+
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+    private Hoax persistWithEntry(User owner, boolean withAttachment) {
+        Hoax hoax = createValidHoax();
+        hoax.setTimestamp(new Date());
+        hoax.setUser(owner);
+        testEntityManager.persist(hoax);
+        if (withAttachment) {
+            hoax.setAttachment(persistAttachment(hoax));
+        }
+        testEntityManager.persist(new FeedEntry(hoax));
+        return hoax;
+    }
+
+    private FileAttachment persistAttachment(Hoax hoax) {
+        FileAttachment fileAttachment = new FileAttachment();
+        fileAttachment.setDate(new Date());
+        fileAttachment.setName("attachment");
+        fileAttachment.setFileType("image/png");
+        fileAttachment.setHoax(hoax);
+        return testEntityManager.persist(fileAttachment);
+    }
+
+    private void flushAndClear() {
+        testEntityManager.flush();
+        testEntityManager.clear();
+        statistics.clear();
+    }
+
+    private PageRequest newestFirst(int size) {
+        return PageRequest.of(0, size, Sort.by(Sort.Direction.DESC, "id"));
+    }
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+}
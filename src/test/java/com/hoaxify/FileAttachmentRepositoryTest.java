@@ -8,9 +8,12 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -29,19 +32,19 @@ public class FileAttachmentRepositoryTest {
     FileAttachmentRepository fileAttachmentRepository;
 
     @Test
-    public void findByDateBeforeAndHoaxIsNull_whenAttachmentsDateOlderThanOneHour_returnsAll(){
+    public void findByDateBeforeAndHoaxIsNullAndIdGreaterThan_whenAttachmentsDateOlderThanOneHour_returnsAll(){
         testEntityManager.persist(getOneHourOldFileAttachment());
         testEntityManager.persist(getOneHourOldFileAttachment());
         testEntityManager.persist(getOneHourOldFileAttachment());
 
         Date oneHourAgo = new Date(System.currentTimeMillis() - (60*60*1000));
-        List<FileAttachment> attachments = fileAttachmentRepository.findByDateBeforeAndHoaxIsNull(oneHourAgo);
+        List<FileAttachment> attachments = findOrphansBefore(oneHourAgo);
         assertThat(attachments.size()).isEqualTo(3);
     }
 
 
     @Test
-    public void findByDateBeforeAndHoaxIsNull_whenAttachmentsDateOlderThanOneHourButHaveHoax_returnsNone(){
+    public void findByDateBeforeAndHoaxIsNullAndIdGreaterThan_whenAttachmentsDateOlderThanOneHourButHaveHoax_returnsNone(){
         Hoax hoax1 = testEntityManager.persist(createValidHoax());
         Hoax hoax2 = testEntityManager.persist(createValidHoax());
         Hoax hoax3 = testEntityManager.persist(createValidHoax());
@@ -51,41 +54,71 @@ public class FileAttachmentRepositoryTest {
         testEntityManager.persist(getOldFileAttachmentWithHoax(hoax3));
 
         Date oneHourAgo = new Date(System.currentTimeMillis() - (60*60*1000));
-        List<FileAttachment> attachments = fileAttachmentRepository.findByDateBeforeAndHoaxIsNull(oneHourAgo);
+        List<FileAttachment> attachments = findOrphansBefore(oneHourAgo);
         assertThat(attachments.size()).isZero();
     }
 
 
     @Test
-    public void findByDateBeforeAndHoaxIsNull_whenAttachmentsDateWithinOneHour_returnsNone(){
+    public void findByDateBeforeAndHoaxIsNullAndIdGreaterThan_whenAttachmentsDateWithinOneHour_returnsNone(){
         testEntityManager.persist(getFileAttachmentWithinOneHour());
         testEntityManager.persist(getFileAttachmentWithinOneHour());
         testEntityManager.persist(getFileAttachmentWithinOneHour());
 
         Date oneHourAgo = new Date(System.currentTimeMillis() - (60*60*1000));
-        List<FileAttachment> attachments = fileAttachmentRepository.findByDateBeforeAndHoaxIsNull(oneHourAgo);
+        List<FileAttachment> attachments = findOrphansBefore(oneHourAgo);
         assertThat(attachments.size()).isZero();
     }
 
 
     @Test
-    public void findByDateBeforeAndHoaxIsNull_whenSomeAttachmentsOldSomeNewAndSomeWithHoax_returnsAttachmentsWithOlderAndNoHoaxAssigned(){
+    public void findByDateBeforeAndHoaxIsNullAndIdGreaterThan_whenSomeAttachmentsOldSomeNewAndSomeWithHoax_returnsAttachmentsWithOlderAndNoHoaxAssigned(){
         Hoax hoax1 = testEntityManager.persist(createValidHoax());
         testEntityManager.persist(getOldFileAttachmentWithHoax(hoax1));
         testEntityManager.persist(getOneHourOldFileAttachment());
         testEntityManager.persist(getFileAttachmentWithinOneHour());
 
         Date oneHourAgo = new Date(System.currentTimeMillis() - (60*60*1000));
-        List<FileAttachment> attachments = fileAttachmentRepository.findByDateBeforeAndHoaxIsNull(oneHourAgo);
+        List<FileAttachment> attachments = findOrphansBefore(oneHourAgo);
         assertThat(attachments.size()).isEqualTo(1);
     }
 
 
 
+    @Test
+    public void findByDateBeforeAndHoaxIsNullAndIdGreaterThan_whenPageIsRequested_returnsOrphansAfterIdInOrder(){
+        FileAttachment first = testEntityManager.persist(getOneHourOldFileAttachment());
+        FileAttachment second = testEntityManager.persist(getOneHourOldFileAttachment());
+        FileAttachment third = testEntityManager.persist(getOneHourOldFileAttachment());
+
+        Date oneHourAgo = new Date(System.currentTimeMillis() - (60*60*1000));
+        List<FileAttachment> attachments = fileAttachmentRepository.findByDateBeforeAndHoaxIsNullAndIdGreaterThan(
+                oneHourAgo, first.getId(), PageRequest.of(0, 1, Sort.by("id")));
+        assertThat(attachments).extracting(FileAttachment::getId).containsExactly(second.getId());
+        assertThat(third.getId()).isGreaterThan(second.getId());
+    }
+
+
+    @Test
+    public void deleteByIdIn_whenIdsAreGiven_removesOnlyThoseAttachments(){
+        FileAttachment first = testEntityManager.persist(getOneHourOldFileAttachment());
+        FileAttachment second = testEntityManager.persist(getOneHourOldFileAttachment());
+        FileAttachment third = testEntityManager.persist(getOneHourOldFileAttachment());
+
+        int deleted = fileAttachmentRepository.deleteByIdIn(Arrays.asList(first.getId(), second.getId()));
+        assertThat(deleted).isEqualTo(2);
+        assertThat(fileAttachmentRepository.findAll()).extracting(FileAttachment::getId).containsExactly(third.getId());
+    }
+
+
 
     //************************************************************************************
     //************************ METHODS ***************************************************
     //************************************************************************************
+    private List<FileAttachment> findOrphansBefore(Date date){
+        return fileAttachmentRepository.findByDateBeforeAndHoaxIsNullAndIdGreaterThan(date, 0, PageRequest.of(0, 10, Sort.by("id")));
+    }
+
     private FileAttachment getOneHourOldFileAttachment(){
         Date date = new Date(System.currentTimeMillis() - (60*60*1000) - 1);
         FileAttachment fileAttachment = new FileAttachment();
@@ -0,0 +1,135 @@
+package com.hoaxify;
+
+import com.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.error.TooManyRequestsException;
+import com.hoaxify.file.FileIoExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FileIoExecutorTest {
+
+    AppConfiguration appConfiguration;
+
+    FileIoExecutor fileIoExecutor;
+
+    CountDownLatch release;
+
+    @Before
+    public void init() {
+        appConfiguration = new AppConfiguration();
+        appConfiguration.setFileIoAsync(true);
+        appConfiguration.setFileIoVirtualThreads(false);
+        appConfiguration.setFileIoThreads(1);
+        appConfiguration.setFileIoQueueCapacity(1);
+        fileIoExecutor = new FileIoExecutor(appConfiguration);
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void cleanup() {
+        release.countDown();
+        fileIoExecutor.shutdown();
+    }
+
+
+    @Test
+    public void submit_whenAsyncIsDisabled_runsOnCallerThread() {
+        appConfiguration.setFileIoAsync(false);
+        Thread caller = Thread.currentThread();
+
+        CompletableFuture<Thread> future = fileIoExecutor.submit(Thread::currentThread);
+        assertThat(future.join()).isSameAs(caller);
+    }
+
+
+    @Test
+    public void execute_whenAsyncIsDisabled_returnsValueInsteadOfFuture() {
+        appConfiguration.setFileIoAsync(false);
+        Thread caller = Thread.currentThread();
+
+        assertThat(fileIoExecutor.execute(Thread::currentThread)).isSameAs(caller);
+    }
+
+
+    @Test
+    public void execute_whenAsyncIsEnabled_returnsFuture() {
+        assertThat(fileIoExecutor.execute(() -> true)).isInstanceOf(CompletableFuture.class);
+    }
+
+
+    @Test
+    public void submit_whenAsyncIsEnabled_runsOffCallerThread() {
+        Thread caller = Thread.currentThread();
+
+        CompletableFuture<Thread> future = fileIoExecutor.submit(Thread::currentThread);
+        assertThat(future.join()).isNotSameAs(caller);
+    }
+
+
+    @Test
+    public void submit_whenThreadsAndQueueAreFull_throwsTooManyRequests() {
+        fileIoExecutor.submit(this::awaitRelease);
+        fileIoExecutor.submit(this::awaitRelease);
+
+        assertThatThrownBy(() -> fileIoExecutor.submit(this::awaitRelease))
+                .isInstanceOf(TooManyRequestsException.class);
+    }
+
+
+    @Test
+    public void submit_whenPreviousTasksFinished_acceptsNewTasks() {
+        CompletableFuture<Boolean> first = fileIoExecutor.submit(this::awaitRelease);
+        CompletableFuture<Boolean> second = fileIoExecutor.submit(this::awaitRelease);
+        release.countDown();
+        first.join();
+        second.join();
+
+        assertThat(fileIoExecutor.submit(() -> true).join()).isTrue();
+    }
+
+
+    @Test
+    public void submit_whenVirtualThreadsAreNotAvailable_usesBoundedPool() {
+        appConfiguration.setFileIoVirtualThreads(true);
+        FileIoExecutor executor = new FileIoExecutor(appConfiguration);
+
+        boolean runtimeHasVirtualThreads = hasVirtualThreads();
+        assertThat(executor.isVirtualThreads()).isEqualTo(runtimeHasVirtualThreads);
+        executor.shutdown();
+    }
+
+
+
+
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+    private boolean awaitRelease() {
+        try {
+            release.await();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean hasVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+}
@@ -1,9 +1,17 @@
 package com.hoaxify;
 
 import com.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.error.PayloadTooLargeException;
+import com.hoaxify.file.CleanupReport;
 import com.hoaxify.file.FileAttachment;
 import com.hoaxify.file.FileAttachmentRepository;
 import com.hoaxify.file.FileService;
+import com.hoaxify.file.LocalBlobStore;
+import com.hoaxify.file.StoredFileService;
+import com.hoaxify.shared.Base64Image;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
 import org.junit.Before;
@@ -11,16 +19,27 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.aspectj.util.FileUtil.copyFile;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -30,17 +49,27 @@ public class FileServiceTest {
 
     FileService fileService;
 
+    LocalBlobStore blobStore;
+
     AppConfiguration appConfiguration;
 
+    MeterRegistry meterRegistry;
+
     @MockBean
     FileAttachmentRepository fileAttachmentRepository;
 
+    @MockBean
+    UserRepository userRepository;
+
     @Before
     public void init(){
         appConfiguration = new AppConfiguration();
         appConfiguration.setUploadPath("uploads-test");
 
-        fileService = new FileService(appConfiguration, fileAttachmentRepository);
+        meterRegistry = new SimpleMeterRegistry();
+        blobStore = new LocalBlobStore(appConfiguration);
+        fileService = new FileService(appConfiguration, fileAttachmentRepository, userRepository,
+                new StoredFileService(appConfiguration, blobStore), blobStore, meterRegistry);
 
         new File(appConfiguration.getUploadPath()).mkdir();
         new File(appConfiguration.getFullProfileImagePath()).mkdir();
@@ -64,6 +93,148 @@ public class FileServiceTest {
     }
 
 
+    @Test
+    public void detectType_whenCalled_recordsDetectTypeTimer() throws IOException {
+        byte[] fileArr = FileUtils.readFileToByteArray(new ClassPathResource("test-png.png").getFile());
+        fileService.detectType(fileArr);
+
+        assertThat(meterRegistry.get("hoaxify.file.detect-type").timer().count()).isEqualTo(1);
+    }
+
+
+    @Test
+    public void saveAttachment_whenFileIsProvided_storesSameBytesAndDetectsTypeFromHeader() throws IOException {
+        byte[] fileArr = FileUtils.readFileToByteArray(new ClassPathResource("test-png.png").getFile());
+        when(fileAttachmentRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        FileAttachment saved = fileService.saveAttachment(new MockMultipartFile("file", fileArr));
+
+        File stored = blobStore.shardedPath(appConfiguration.getAttachmentFolder(), saved.getName()).toFile();
+        assertThat(FileUtils.readFileToByteArray(stored)).isEqualTo(fileArr);
+        assertThat(saved.getFileType()).isEqualToIgnoringCase("image/png");
+    }
+
+
+    @Test
+    public void saveAttachment_whenFileIsLargerThanMaxSize_throwsAndLeavesNoFileInStorage() throws IOException {
+        byte[] fileArr = FileUtils.readFileToByteArray(new ClassPathResource("test-png.png").getFile());
+        appConfiguration.setMaxAttachmentSize(fileArr.length - 1);
+
+        assertThatThrownBy(() -> fileService.saveAttachment(new MockMultipartFile("file", fileArr)))
+                .isInstanceOf(PayloadTooLargeException.class);
+        assertThat(storedFileNames(appConfiguration.getFullAttachmentsPath())).isEmpty();
+    }
+
+
+    @Test
+    public void saveAttachment_whenContentAddressedAndSameFileUploadedTwice_storesOneFileNamedByHash() throws IOException {
+        appConfiguration.setContentAddressedStorage(true);
+        byte[] fileArr = FileUtils.readFileToByteArray(new ClassPathResource("test-png.png").getFile());
+        when(fileAttachmentRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        FileAttachment first = fileService.saveAttachment(new MockMultipartFile("file", fileArr));
+        FileAttachment second = fileService.saveAttachment(new MockMultipartFile("file", fileArr));
+
+        assertThat(first.getName()).isEqualTo(second.getName()).isEqualTo(DigestUtils.sha256Hex(fileArr));
+        assertThat(storedFileNames(appConfiguration.getFullAttachmentsPath())).containsExactly(first.getName());
+        assertThat(second.getFileType()).isEqualToIgnoringCase("image/png");
+    }
+
+
+    @Test
+    public void saveProfileImage_whenBase64ImageIsProvided_storesDecodedBytes() throws IOException {
+        byte[] fileArr = FileUtils.readFileToByteArray(new ClassPathResource("profile.png").getFile());
+
+        String name = fileService.saveProfileImage(new Base64Image(Base64.getEncoder().encodeToString(fileArr)));
+
+        File stored = blobStore.shardedPath(appConfiguration.getProfileImagesFolder(), name).toFile();
+        assertThat(FileUtils.readFileToByteArray(stored)).isEqualTo(fileArr);
+    }
+
+
+    @Test
+    public void saveProfileImage_whenContentAddressedAndSameImageSavedTwice_storesOneFileNamedByHash() throws IOException {
+        appConfiguration.setContentAddressedStorage(true);
+        byte[] fileArr = FileUtils.readFileToByteArray(new ClassPathResource("profile.png").getFile());
+        Base64Image base64 = new Base64Image(Base64.getEncoder().encodeToString(fileArr));
+
+        String first = fileService.saveProfileImage(base64);
+        String second = fileService.saveProfileImage(base64);
+
+        assertThat(first).isEqualTo(second).isEqualTo(DigestUtils.sha256Hex(fileArr));
+        assertThat(storedFileNames(appConfiguration.getFullProfileImagePath())).containsExactly(first);
+    }
+
+
+    @Test
+    public void deleteAttachmentImage_whenContentAddressedAndStillReferenced_keepsFile() throws IOException {
+        appConfiguration.setContentAddressedStorage(true);
+        File target = new File(appConfiguration.getFullAttachmentsPath() + "/shared-file");
+        copyFile(new ClassPathResource("profile.png").getFile(), target);
+        when(fileAttachmentRepository.countByName("shared-file")).thenReturn(1L);
+
+        fileService.deleteAttachmentImage("shared-file");
+        assertThat(target).exists();
+    }
+
+
+    @Test
+    public void deleteAttachmentImage_whenContentAddressedAndNoLongerReferenced_removesFile() throws IOException {
+        appConfiguration.setContentAddressedStorage(true);
+        File target = new File(appConfiguration.getFullAttachmentsPath() + "/shared-file");
+        copyFile(new ClassPathResource("profile.png").getFile(), target);
+        when(fileAttachmentRepository.countByName("shared-file")).thenReturn(0L);
+
+        fileService.deleteAttachmentImage("shared-file");
+        assertThat(target).doesNotExist();
+    }
+
+
+    @Test
+    public void deleteProfileImage_whenContentAddressedAndUsedByOtherUser_keepsFile() throws IOException {
+        appConfiguration.setContentAddressedStorage(true);
+        File target = new File(appConfiguration.getFullProfileImagePath() + "/shared-image");
+        copyFile(new ClassPathResource("profile.png").getFile(), target);
+        when(userRepository.countByImage("shared-image")).thenReturn(1L);
+
+        fileService.deleteProfileImage("shared-image");
+        assertThat(target).exists();
+    }
+
+
+    @Test
+    public void deleteAttachmentImage_whenContentAddressedAndSameFileUploadedBeforeRowIsSaved_keepsFile() throws IOException {
+        appConfiguration.setContentAddressedStorage(true);
+        byte[] fileArr = FileUtils.readFileToByteArray(new ClassPathResource("test-png.png").getFile());
+        String hash = DigestUtils.sha256Hex(fileArr);
+        File stored = blobStore.shardedPath(appConfiguration.getAttachmentFolder(), hash).toFile();
+        // el adjunto viejo con el mismo contenido se borra justo despues del rename, antes de guardar la fila nueva
+        when(fileAttachmentRepository.countByName(hash)).thenReturn(0L);
+        when(fileAttachmentRepository.save(any())).thenAnswer(invocation -> {
+            fileService.deleteAttachmentImage(hash);
+            return invocation.getArgument(0);
+        });
+
+        fileService.saveAttachment(new MockMultipartFile("file", fileArr));
+
+        assertThat(stored).exists();
+    }
+
+
+    @Test
+    public void deleteAttachmentImage_whenContentAddressedAndUploadRowWasSaved_removesFileOnceUnreferenced() throws IOException {
+        appConfiguration.setContentAddressedStorage(true);
+        byte[] fileArr = FileUtils.readFileToByteArray(new ClassPathResource("test-png.png").getFile());
+        when(fileAttachmentRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        FileAttachment saved = fileService.saveAttachment(new MockMultipartFile("file", fileArr));
+        when(fileAttachmentRepository.countByName(saved.getName())).thenReturn(0L);
+
+        fileService.deleteAttachmentImage(saved.getName());
+
+        assertThat(blobStore.shardedPath(appConfiguration.getAttachmentFolder(), saved.getName()).toFile()).doesNotExist();
+    }
+
+
     @Test
     public void cleanupStorage_whenOldFilesExist_removesFilesFromStorage() throws IOException {
         String fileName =  "random-file";
@@ -77,7 +248,8 @@ public class FileServiceTest {
         fileAttachment.setId(5);
         fileAttachment.setName(fileName);
 
-        when(fileAttachmentRepository.findByDateBeforeAndHoaxIsNull(any())).thenReturn(Collections.singletonList(fileAttachment));
+        when(fileAttachmentRepository.findByDateBeforeAndHoaxIsNullAndIdGreaterThan(any(), anyLong(), any()))
+                .thenReturn(Collections.singletonList(fileAttachment));
 
         fileService.cleanupStorage();
         File storedImage = new File(filePath);
@@ -86,6 +258,65 @@ public class FileServiceTest {
 
 
 
+    @Test
+    public void cleanupStorage_whenOldFilesExist_reportsFilesAndBytesReclaimed() throws IOException {
+        File source = new ClassPathResource("profile.png").getFile();
+        copyFile(source, new File(appConfiguration.getFullAttachmentsPath() + "/file-1"));
+        copyFile(source, new File(appConfiguration.getFullAttachmentsPath() + "/file-2"));
+
+        when(fileAttachmentRepository.findByDateBeforeAndHoaxIsNullAndIdGreaterThan(any(), anyLong(), any()))
+                .thenReturn(Arrays.asList(createFileAttachment(1, "file-1"), createFileAttachment(2, "file-2")));
+
+        fileService.cleanupStorage();
+        CleanupReport report = fileService.getLastCleanupReport();
+        assertThat(report.getFilesDeleted()).isEqualTo(2);
+        assertThat(report.getBytesReclaimed()).isEqualTo(source.length() * 2);
+        assertThat(report.isCompleted()).isTrue();
+    }
+
+
+    @Test
+    public void cleanupStorage_whenOldFilesExist_incrementsCleanupCounters() throws IOException {
+        File source = new ClassPathResource("profile.png").getFile();
+        copyFile(source, new File(appConfiguration.getFullAttachmentsPath() + "/file-1"));
+
+        when(fileAttachmentRepository.findByDateBeforeAndHoaxIsNullAndIdGreaterThan(any(), anyLong(), any()))
+                .thenReturn(Collections.singletonList(createFileAttachment(1, "file-1")));
+
+        fileService.cleanupStorage();
+        assertThat(meterRegistry.get("hoaxify.file.cleanup.files").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("hoaxify.file.cleanup.reclaimed").counter().count()).isEqualTo(source.length());
+    }
+
+
+    @Test
+    public void cleanupStorage_whenOrphansSpanSeveralBatches_requestsNextBatchAfterLastId() {
+        appConfiguration.setCleanupBatchSize(2);
+        when(fileAttachmentRepository.findByDateBeforeAndHoaxIsNullAndIdGreaterThan(any(), eq(0L), any()))
+                .thenReturn(Arrays.asList(createFileAttachment(1, "file-1"), createFileAttachment(2, "file-2")));
+        when(fileAttachmentRepository.findByDateBeforeAndHoaxIsNullAndIdGreaterThan(any(), eq(2L), any()))
+                .thenReturn(Collections.singletonList(createFileAttachment(3, "file-3")));
+
+        fileService.cleanupStorage();
+        verify(fileAttachmentRepository).deleteByIdIn(Arrays.asList(1L, 2L));
+        verify(fileAttachmentRepository).deleteByIdIn(Collections.singletonList(3L));
+        assertThat(fileService.getLastCleanupReport().getFilesDeleted()).isEqualTo(3);
+    }
+
+
+    @Test
+    public void cleanupStorage_whenMaxFilesPerRunIsReached_stopsAndReportsNotCompleted() {
+        appConfiguration.setCleanupBatchSize(2);
+        appConfiguration.setCleanupMaxFilesPerRun(2);
+        when(fileAttachmentRepository.findByDateBeforeAndHoaxIsNullAndIdGreaterThan(any(), anyLong(), any()))
+                .thenReturn(Arrays.asList(createFileAttachment(1, "file-1"), createFileAttachment(2, "file-2")));
+
+        fileService.cleanupStorage();
+        verify(fileAttachmentRepository, times(1)).findByDateBeforeAndHoaxIsNullAndIdGreaterThan(any(), anyLong(), any());
+        assertThat(fileService.getLastCleanupReport().isCompleted()).isFalse();
+    }
+
+
     @Test
     public void cleanupStorage_whenOldFilesExist_removesFileAttachmentFromDatabase() throws IOException {
         String fileName =  "random-file";
@@ -99,13 +330,53 @@ public class FileServiceTest {
         fileAttachment.setId(5);
         fileAttachment.setName(fileName);
 
-        when(fileAttachmentRepository.findByDateBeforeAndHoaxIsNull(any())).thenReturn(Collections.singletonList(fileAttachment));
+        when(fileAttachmentRepository.findByDateBeforeAndHoaxIsNullAndIdGreaterThan(any(), anyLong(), any()))
+                .thenReturn(Collections.singletonList(fileAttachment));
 
         fileService.cleanupStorage();
-        verify(fileAttachmentRepository).deleteById(5L);
+        verify(fileAttachmentRepository).deleteByIdIn(Collections.singletonList(5L));
     }
 
 
+    @Test
+    public void cleanupStorage_whenFileCannotBeDeleted_keepsItsRowForNextRun() throws IOException {
+        File source = new ClassPathResource("profile.png").getFile();
+        copyFile(source, new File(appConfiguration.getFullAttachmentsPath() + "/file-1"));
+        copyFile(source, new File(appConfiguration.getFullAttachmentsPath() + "/file-2"));
+        LocalBlobStore failingStore = spy(blobStore);
+        doThrow(new IOException("disk error")).when(failingStore).delete(any(), eq("file-1"));
+        fileService = new FileService(appConfiguration, fileAttachmentRepository, userRepository,
+                new StoredFileService(appConfiguration, failingStore), failingStore, meterRegistry);
+        when(fileAttachmentRepository.findByDateBeforeAndHoaxIsNullAndIdGreaterThan(any(), anyLong(), any()))
+                .thenReturn(Arrays.asList(createFileAttachment(1, "file-1"), createFileAttachment(2, "file-2")));
+
+        fileService.cleanupStorage();
+        verify(fileAttachmentRepository).deleteByIdIn(Collections.singletonList(2L));
+        assertThat(fileService.getLastCleanupReport().getFilesDeleted()).isEqualTo(1);
+    }
+
+
+
+
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+    private FileAttachment createFileAttachment(long id, String name) {
+        FileAttachment fileAttachment = new FileAttachment();
+        fileAttachment.setId(id);
+        fileAttachment.setName(name);
+        return fileAttachment;
+    }
+
+    // los archivos quedan repartidos en subcarpetas, se buscan en todo el arbol
+    private List<String> storedFileNames(String folderPath) {
+        return FileUtils.listFiles(new File(folderPath), null, true).stream()
+                .map(File::getName)
+                .collect(Collectors.toList());
+    }
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
 }
 
 
@@ -1,6 +1,7 @@
 package com.hoaxify;
 
 import com.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.file.BlobStore;
 import com.hoaxify.file.FileAttachment;
 import com.hoaxify.file.FileAttachmentRepository;
 import com.hoaxify.user.UserService;
@@ -11,6 +12,7 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.cache.CacheManager;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.*;
 import org.springframework.http.client.support.BasicAuthenticationInterceptor;
@@ -39,21 +41,29 @@ public class FileUploadControllerTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    CacheManager cacheManager;
+
     @Autowired
     private UserService userService;
 
     @Autowired
     private AppConfiguration appConfiguration;
 
+    @Autowired
+    private BlobStore blobStore;
+
     @Autowired
     private FileAttachmentRepository fileAttachmentRepository;
 
     @Before
     public void init() throws IOException {
         userRepository.deleteAll();
+        cacheManager.getCache("users").clear();
         fileAttachmentRepository.deleteAll();
         testRestTemplate.getRestTemplate().getInterceptors().clear();
         FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
+        appConfiguration.setFileIoAsync(false);
     }
 
 
@@ -73,6 +83,17 @@ public class FileUploadControllerTest {
     }
 
 
+    @Test
+    public void uploadFile_withImageWhenFileIoIsAsync_receiveFileAttachmentWithName(){
+        appConfiguration.setFileIoAsync(true);
+        userService.save(createValidUser("user1"));
+        authenticate("user1");
+        ResponseEntity<FileAttachment> response = uploadFile(getRequestEntity(), FileAttachment.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(Objects.requireNonNull(response.getBody()).getName()).isNotNull();
+    }
+
+
     @Test
     public void uploadFile_withImageFromAuthorizedUser_receiveFileAttachmentWithDate(){
         userService.save(createValidUser("user1"));
@@ -97,9 +118,8 @@ public class FileUploadControllerTest {
         userService.save(createValidUser("user1"));
         authenticate("user1");
         ResponseEntity<FileAttachment> response = uploadFile(getRequestEntity(), FileAttachment.class);
-        String imagePath = appConfiguration.getFullAttachmentsPath() + "/" + Objects.requireNonNull(response.getBody()).getName();
-        File storedImage = new File(imagePath);
-        assertThat(storedImage).exists();
+        String imageName = Objects.requireNonNull(response.getBody()).getName();
+        assertThat(blobStore.exists(appConfiguration.getAttachmentFolder(), imageName)).isTrue();
     }
 
 
@@ -2,16 +2,26 @@ package com.hoaxify;
 
 import com.hoaxify.configuration.AppConfiguration;
 import com.hoaxify.error.ApiError;
+import com.hoaxify.file.BlobStore;
 import com.hoaxify.file.FileAttachment;
 import com.hoaxify.file.FileAttachmentRepository;
 import com.hoaxify.file.FileService;
+import com.hoaxify.hoax.FeedEntry;
+import com.hoaxify.hoax.FeedEntryRepository;
 import com.hoaxify.hoax.Hoax;
 import com.hoaxify.hoax.HoaxRepository;
 import com.hoaxify.hoax.HoaxService;
+import com.hoaxify.hoax.HoaxStreamService;
+import com.hoaxify.hoax.HotFeedCache;
+import com.hoaxify.hoax.NewHoaxCounter;
 import com.hoaxify.hoax.vm.HoaxVM;
+import com.hoaxify.shared.CursorPage;
 import com.hoaxify.shared.GenericResponse;
+import com.hoaxify.shared.SlicePage;
 import com.hoaxify.user.User;
 import com.hoaxify.user.UserService;
+import com.hoaxify.user.vm.LoginVM;
+import com.hoaxify.user.vm.UserUpdateVM;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -19,6 +29,7 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.cache.CacheManager;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.HttpMethod;
@@ -28,13 +39,20 @@ import org.springframework.http.client.support.BasicAuthenticationInterceptor;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceUnit;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -62,6 +80,9 @@ public class HoaxControllerTest {
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    CacheManager cacheManager;
+
     private static final String API_1_0_HOAXES = "/api/1.0/hoaxes";
 
     @Autowired
@@ -70,6 +91,15 @@ public class HoaxControllerTest {
     @Autowired
     private HoaxService hoaxService;
 
+    @Autowired
+    HoaxStreamService hoaxStreamService;
+
+    @Autowired
+    HotFeedCache hotFeedCache;
+
+    @Autowired
+    NewHoaxCounter newHoaxCounter;
+
     @Autowired
     FileAttachmentRepository fileAttachmentRepository;
 
@@ -79,6 +109,15 @@ public class HoaxControllerTest {
     @Autowired
     AppConfiguration appConfiguration;
 
+    @Autowired
+    BlobStore blobStore;
+
+    @Autowired
+    FeedEntryRepository feedEntryRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
     @PersistenceUnit
     private EntityManagerFactory entityManagerFactory;
 
@@ -87,6 +126,9 @@ public class HoaxControllerTest {
         fileAttachmentRepository.deleteAll();
         hoaxRepository.deleteAll();
         userRepository.deleteAll();
+        cacheManager.getCache("users").clear();
+        hotFeedCache.clear();
+        newHoaxCounter.clear();
         testRestTemplate.getRestTemplate().getInterceptors().clear();
         cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
     }
@@ -94,6 +136,7 @@ public class HoaxControllerTest {
 
     @After
     public void cleanupAfter() {
+        hoaxStreamService.completeAll();
         fileAttachmentRepository.deleteAll();
         hoaxRepository.deleteAll();
     }
@@ -663,6 +706,58 @@ public class HoaxControllerTest {
     }
 
 
+    @Test
+    public void deleteHoax_whenUserIsAuthorized_hoaxRemovedFromFeedProjection(){
+        User user = userService.save(createValidUser("user1"));
+        authenticate("user1");
+        Hoax hoax = hoaxService.save(user, createValidHoax());
+
+        deleteHoax(hoax.getId(), Object.class);
+        assertThat(feedEntryRepository.findById(hoax.getId())).isNotPresent();
+    }
+
+
+    @Test
+    public void deleteHoax_whenHoaxHasNoFeedProjectionRow_receiveOk(){
+        User user = userService.save(createValidUser("user1"));
+        authenticate("user1");
+        Hoax hoax = hoaxService.save(user, createValidHoax());
+        feedEntryRepository.deleteById(hoax.getId());
+
+        ResponseEntity<Object> response = deleteHoax(hoax.getId(), Object.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(hoaxRepository.findById(hoax.getId())).isNotPresent();
+    }
+
+
+    @Test
+    public void postHoax_whenHoaxIsValid_feedEntryHasAuthorInlined() {
+        User user = userService.save(createValidUser("user1"));
+        Hoax hoax = hoaxService.save(user, createValidHoax());
+
+        FeedEntry entry = feedEntryRepository.findById(hoax.getId()).get();
+        assertThat(entry.getUsername()).isEqualTo("user1");
+        assertThat(entry.getDisplayName()).isEqualTo(user.getDisplayName());
+        assertThat(entry.getContent()).isEqualTo(hoax.getContent());
+    }
+
+
+    @Test
+    public void getHoaxes_whenAuthorChangesDisplayName_receiveHoaxWithNewDisplayName() {
+        User user = userService.save(createValidUser("user1"));
+        hoaxService.save(user, createValidHoax());
+        UserUpdateVM update = new UserUpdateVM();
+        update.setDisplayName("updated-display");
+
+        userService.update(user.getId(), update);
+
+        ResponseEntity<TestPage<HoaxVM>> response = getHoaxes(new ParameterizedTypeReference<TestPage<HoaxVM>>() {
+        });
+        assertThat(Objects.requireNonNull(response.getBody()).getContent().get(0).getUser().getDisplayName()).isEqualTo("updated-display");
+    }
+
+
     @Test
     public void deleteHoax_whenHoaxIsOwnedByAnotherUser_receiveForbidden(){
         userService.save(createValidUser("user1"));
@@ -723,14 +818,479 @@ public class HoaxControllerTest {
         long hoaxId = Objects.requireNonNull(response.getBody()).getId();
         deleteHoax(hoaxId, Object.class);
 
-        String attachmentFolderPath = appConfiguration.getFullAttachmentsPath() + "/" + savedFile.getName();
-        File storedImage = new File(attachmentFolderPath);
-        assertThat(storedImage).doesNotExist();
+        assertThat(blobStore.exists(appConfiguration.getAttachmentFolder(), savedFile.getName())).isFalse();
+    }
+
+
+    @Test
+    public void deleteHoax_whenTransactionRollsBack_attachmentStaysInStorage() throws IOException {
+        User user = userService.save(TestUtil.createValidUser("user1"));
+        FileAttachment savedFile = fileService.saveAttachment(createFile());
+        Hoax hoax = createValidHoax();
+        hoax.setAttachment(savedFile);
+        long hoaxId = hoaxService.save(user, hoax).getId();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            hoaxService.deleteHoax(hoaxId);
+            status.setRollbackOnly();
+        });
+
+        assertThat(hoaxRepository.existsById(hoaxId)).isTrue();
+        assertThat(blobStore.exists(appConfiguration.getAttachmentFolder(), savedFile.getName())).isTrue();
+    }
+
+    @Test
+    public void getHoaxesByCursor_whenThereAreNoHoaxes_receiveEmptyLastPage() {
+        final ResponseEntity<CursorPage<HoaxVM>> response = getHoaxesByCursor("", new ParameterizedTypeReference<CursorPage<HoaxVM>>() {
+        });
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(Objects.requireNonNull(response.getBody()).getContent()).isEmpty();
+        assertThat(response.getBody().isLast()).isTrue();
+    }
+
+
+    @Test
+    public void getHoaxesByCursor_whenThereAreMoreHoaxesThanPageSize_receiveNewestFirstWithNextCursor() {
+        User user = userService.save(createValidUser("user1"));
+        IntStream.rangeClosed(1, 7).forEach(i -> hoaxService.save(user, createValidHoax()));
+
+        final ResponseEntity<CursorPage<HoaxVM>> response = getHoaxesByCursor("", new ParameterizedTypeReference<CursorPage<HoaxVM>>() {
+        });
+        CursorPage<HoaxVM> page = Objects.requireNonNull(response.getBody());
+        assertThat(page.getContent()).hasSize(5);
+        assertThat(page.getContent().get(0).getId()).isGreaterThan(page.getContent().get(1).getId());
+        assertThat(page.getNextCursor()).isNotNull();
+        assertThat(page.isLast()).isFalse();
+    }
+
+
+    @Test
+    public void getHoaxesByCursor_whenNextCursorProvided_receiveRemainingOlderHoaxes() {
+        User user = userService.save(createValidUser("user1"));
+        IntStream.rangeClosed(1, 7).forEach(i -> hoaxService.save(user, createValidHoax()));
+
+        CursorPage<HoaxVM> first = getHoaxesByCursor("", new ParameterizedTypeReference<CursorPage<HoaxVM>>() {
+        }).getBody();
+        CursorPage<HoaxVM> second = getHoaxesByCursor(Objects.requireNonNull(first).getNextCursor(), new ParameterizedTypeReference<CursorPage<HoaxVM>>() {
+        }).getBody();
+
+        assertThat(Objects.requireNonNull(second).getContent()).hasSize(2);
+        assertThat(second.getContent().get(0).getId()).isLessThan(first.getContent().get(4).getId());
+        assertThat(second.isLast()).isTrue();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+
+    @Test
+    public void getHoaxesByCursor_whenCursorIsInvalid_receiveBadRequest() {
+        final ResponseEntity<Object> response = getHoaxesByCursor("not-a-cursor", new ParameterizedTypeReference<Object>() {
+        });
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+
+    @Test
+    public void getHoaxesOfUserByCursor_whenMultipleUserExistWithMultipleHoaxes_receiveOnlyHoaxesOfUser() {
+        User userWithThreeHoaxes = userService.save(createValidUser("user1"));
+        IntStream.rangeClosed(1, 3).forEach(i -> hoaxService.save(userWithThreeHoaxes, createValidHoax()));
+
+        User userWithTwoHoaxes = userService.save(createValidUser("user2"));
+        IntStream.rangeClosed(1, 2).forEach(i -> hoaxService.save(userWithTwoHoaxes, createValidHoax()));
+
+        final ResponseEntity<CursorPage<HoaxVM>> response = getHoaxesOfUserByCursor("user2", "", new ParameterizedTypeReference<CursorPage<HoaxVM>>() {
+        });
+        assertThat(Objects.requireNonNull(response.getBody()).getContent()).hasSize(2);
+        assertThat(response.getBody().getContent()).allMatch(hoax -> hoax.getUser().getUsername().equals("user2"));
+    }
+
+
+    @Test
+    public void getHoaxesOfUserByCursor_whenUserDoesNotExist_receiveNotFound() {
+        final ResponseEntity<Object> response = getHoaxesOfUserByCursor("unknown-user", "", new ParameterizedTypeReference<Object>() {
+        });
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void getHoaxes_whenTotalsFalse_receiveSliceWithHasNextAndWithoutTotals() {
+        User user = userService.save(createValidUser("user1"));
+        IntStream.rangeClosed(1, 7).forEach(i -> hoaxService.save(user, createValidHoax()));
+
+        final ResponseEntity<Map<String, Object>> response = getHoaxesWithoutTotals(API_1_0_HOAXES, new ParameterizedTypeReference<Map<String, Object>>() {
+        });
+        Map<String, Object> body = Objects.requireNonNull(response.getBody());
+        assertThat((List<?>) body.get("content")).hasSize(5);
+        assertThat(body.get("hasNext")).isEqualTo(true);
+        assertThat(body).doesNotContainKeys("totalElements", "totalPages");
+    }
+
+
+    @Test
+    public void getHoaxes_whenTotalsFalseAndHotFeedDisabled_receiveSliceFromDatabase() {
+        appConfiguration.setHotFeedSize(0);
+        try {
+            User user = userService.save(createValidUser("user1"));
+            IntStream.rangeClosed(1, 5).forEach(i -> hoaxService.save(user, createValidHoax()));
+
+            SlicePage<HoaxVM> page = getHoaxesWithoutTotals(API_1_0_HOAXES, new ParameterizedTypeReference<SlicePage<HoaxVM>>() {
+            }).getBody();
+            assertThat(Objects.requireNonNull(page).getContent()).hasSize(5);
+            assertThat(page.isHasNext()).isFalse();
+            assertThat(page.isLast()).isTrue();
+        } finally {
+            appConfiguration.setHotFeedSize(100);
+        }
+    }
+
+
+    @Test
+    public void getHoaxesOfUser_whenTotalsFalse_receiveOnlyHoaxesOfUser() {
+        User user1 = userService.save(createValidUser("user1"));
+        IntStream.rangeClosed(1, 3).forEach(i -> hoaxService.save(user1, createValidHoax()));
+        User user2 = userService.save(createValidUser("user2"));
+        IntStream.rangeClosed(1, 2).forEach(i -> hoaxService.save(user2, createValidHoax()));
+
+        SlicePage<HoaxVM> page = getHoaxesWithoutTotals("/api/1.0/users/user2/hoaxes", new ParameterizedTypeReference<SlicePage<HoaxVM>>() {
+        }).getBody();
+        assertThat(Objects.requireNonNull(page).getContent()).hasSize(2)
+                .allMatch(hoax -> hoax.getUser().getUsername().equals("user2"));
+        assertThat(page.isHasNext()).isFalse();
+    }
+
+
+    @Test
+    public void getHoaxesOfUser_whenTotalsFalseAndUserDoesNotExist_receiveNotFound() {
+        final ResponseEntity<Object> response = getHoaxesWithoutTotals("/api/1.0/users/unknown-user/hoaxes", new ParameterizedTypeReference<Object>() {
+        });
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+
+    @Test
+    public void getOldHoaxes_whenTotalsFalse_receiveSliceOfOlderHoaxesWithoutTotals() {
+        User user = userService.save(createValidUser("user1"));
+        IntStream.rangeClosed(1, 3).forEach(i -> hoaxService.save(user, createValidHoax()));
+        final Hoax fourth = hoaxService.save(user, createValidHoax());
+        hoaxService.save(user, createValidHoax());
+
+        String path = API_1_0_HOAXES + "/" + fourth.getId() + "?direction=before&page=0&size=5&sort=id,desc";
+        final ResponseEntity<Map<String, Object>> response = getHoaxesWithoutTotals(path, new ParameterizedTypeReference<Map<String, Object>>() {
+        });
+        Map<String, Object> body = Objects.requireNonNull(response.getBody());
+        assertThat((List<?>) body.get("content")).hasSize(3);
+        assertThat(body.get("hasNext")).isEqualTo(false);
+        assertThat(body).doesNotContainKeys("totalElements", "totalPages");
+    }
+
+
+    @Test
+    public void getHoaxes_whenTotalsFalseAndCursorProvided_receiveCursorPage() {
+        User user = userService.save(createValidUser("user1"));
+        IntStream.rangeClosed(1, 7).forEach(i -> hoaxService.save(user, createValidHoax()));
+
+        CursorPage<HoaxVM> page = getHoaxesWithoutTotals(API_1_0_HOAXES + "?cursor=", new ParameterizedTypeReference<CursorPage<HoaxVM>>() {
+        }).getBody();
+        assertThat(Objects.requireNonNull(page).getNextCursor()).isNotNull();
+    }
+
+
+    @Test
+    public void streamHoaxes_whenHoaxIsSaved_receiveCreatedEventWithHoaxVM() throws IOException {
+        User user = userService.save(createValidUser("user1"));
+        HttpURLConnection connection = openStream(API_1_0_HOAXES + "/stream");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
+            Hoax saved = hoaxService.save(user, createValidHoax());
+
+            assertThat(readUntilData(reader, "created")).contains("\"id\":" + saved.getId()).contains("user1");
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+
+    @Test
+    public void streamHoaxes_whenHoaxIsDeleted_receiveDeletedEventWithHoaxId() throws IOException {
+        User user = userService.save(createValidUser("user1"));
+        Hoax saved = hoaxService.save(user, createValidHoax());
+        authenticate("user1");
+        HttpURLConnection connection = openStream(API_1_0_HOAXES + "/stream");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
+            deleteHoax(saved.getId(), Object.class);
+
+            assertThat(readUntilData(reader, "deleted")).isEqualTo("{\"id\":" + saved.getId() + "}");
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+
+    @Test
+    public void streamHoaxesOfUser_whenHoaxesAreSavedByDifferentUsers_receiveOnlyEventsOfUser() throws IOException {
+        User user1 = userService.save(createValidUser("user1"));
+        User user2 = userService.save(createValidUser("user2"));
+        HttpURLConnection connection = openStream("/api/1.0/users/user2/hoaxes/stream");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
+            hoaxService.save(user1, createValidHoax());
+            Hoax savedByUser2 = hoaxService.save(user2, createValidHoax());
+
+            assertThat(readUntilData(reader, "created")).contains("\"id\":" + savedByUser2.getId());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+
+    @Test
+    public void streamHoaxesOfUser_whenUserDoesNotExist_receiveNotFound() {
+        final ResponseEntity<Object> response = testRestTemplate.exchange("/api/1.0/users/unknown-user/hoaxes/stream",
+                HttpMethod.GET, null, Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void streamHoaxesOfUser_whenOnlySubscriberIsGone_removesUserEntryOnNextEvent() throws InterruptedException {
+        User user = userService.save(createValidUser("user1"));
+        SseEmitter emitter = hoaxStreamService.subscribe("user1");
+        emitter.complete();
+
+        hoaxService.save(user, createValidHoax());
+
+        // los eventos salen desde el pool de hoax-stream, no desde este hilo
+        long deadline = System.currentTimeMillis() + 5000;
+        while (hoaxStreamService.getSubscriberCount("user1") > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(hoaxStreamService.getSubscriberCount("user1")).isZero();
+    }
+
+    @Test
+    public void getHoaxes_whenFirstPageIsRequestedTwice_secondRequestServedFromHotFeed() {
+        User user = userService.save(createValidUser("user1"));
+        IntStream.rangeClosed(1, 3).forEach(i -> hoaxService.save(user, createValidHoax()));
+
+        getNewestHoaxes(new ParameterizedTypeReference<TestPage<HoaxVM>>() {
+        });
+        long hitsBefore = hotFeedCache.getHits();
+        ResponseEntity<TestPage<HoaxVM>> response = getNewestHoaxes(new ParameterizedTypeReference<TestPage<HoaxVM>>() {
+        });
+
+        assertThat(hotFeedCache.getHits()).isEqualTo(hitsBefore + 1);
+        assertThat(Objects.requireNonNull(response.getBody()).getTotalElements()).isEqualTo(3);
+        assertThat(response.getBody().getContent()).hasSize(3);
+    }
+
+
+    @Test
+    public void getHoaxes_whenHoaxIsSavedAfterHotFeedIsLoaded_receiveNewHoaxFirst() {
+        User user = userService.save(createValidUser("user1"));
+        hoaxService.save(user, createValidHoax());
+        getNewestHoaxes(new ParameterizedTypeReference<TestPage<HoaxVM>>() {
+        });
+
+        Hoax newest = hoaxService.save(user, createValidHoax());
+        ResponseEntity<TestPage<HoaxVM>> response = getNewestHoaxes(new ParameterizedTypeReference<TestPage<HoaxVM>>() {
+        });
+
+        assertThat(Objects.requireNonNull(response.getBody()).getTotalElements()).isEqualTo(2);
+        assertThat(response.getBody().getContent().get(0).getId()).isEqualTo(newest.getId());
+    }
+
+
+    @Test
+    public void getHoaxes_whenAuthorIsUpdatedAfterHotFeedIsLoaded_receiveNewDisplayNameFromHotFeed() {
+        User user = userService.save(createValidUser("user1"));
+        User other = userService.save(createValidUser("user2"));
+        hoaxService.save(user, createValidHoax());
+        hoaxService.save(other, createValidHoax());
+        getNewestHoaxes(new ParameterizedTypeReference<TestPage<HoaxVM>>() {
+        });
+
+        UserUpdateVM update = new UserUpdateVM();
+        update.setDisplayName("updated-display");
+        userService.update(user.getId(), update);
+        long hitsBefore = hotFeedCache.getHits();
+        ResponseEntity<TestPage<HoaxVM>> response = getNewestHoaxes(new ParameterizedTypeReference<TestPage<HoaxVM>>() {
+        });
+
+        assertThat(hotFeedCache.getHits()).isEqualTo(hitsBefore + 1);
+        List<HoaxVM> content = Objects.requireNonNull(response.getBody()).getContent();
+        assertThat(content).filteredOn(hoax -> hoax.getUser().getUsername().equals("user1"))
+                .extracting(hoax -> hoax.getUser().getDisplayName()).containsExactly("updated-display");
+        assertThat(content).filteredOn(hoax -> hoax.getUser().getUsername().equals("user2"))
+                .extracting(hoax -> hoax.getUser().getDisplayName()).containsExactly(other.getDisplayName());
+    }
+
+
+    @Test
+    public void getHoaxes_whenHoaxIsDeletedAfterHotFeedIsLoaded_receivePageWithoutDeletedHoax() {
+        User user = userService.save(createValidUser("user1"));
+        hoaxService.save(user, createValidHoax());
+        Hoax deleted = hoaxService.save(user, createValidHoax());
+        getNewestHoaxes(new ParameterizedTypeReference<TestPage<HoaxVM>>() {
+        });
+
+        authenticate("user1");
+        deleteHoax(deleted.getId(), Object.class);
+        ResponseEntity<TestPage<HoaxVM>> response = getNewestHoaxes(new ParameterizedTypeReference<TestPage<HoaxVM>>() {
+        });
+
+        assertThat(Objects.requireNonNull(response.getBody()).getTotalElements()).isEqualTo(1);
+        assertThat(response.getBody().getContent()).noneMatch(hoax -> hoax.getId() == deleted.getId());
+    }
+
+
+    @Test
+    public void getNewHoaxCountOfUser_whenCountIsExactAndHotFeedIsLoaded_receiveCountFromHotFeed() {
+        appConfiguration.setNewHoaxCountExact(true);
+        try {
+            User user = userService.save(createValidUser("user1"));
+            Hoax first = hoaxService.save(user, createValidHoax());
+            getNewHoaxCountOfUser(first.getId(), "user1", new ParameterizedTypeReference<Map<String, Long>>() {
+            });
+            hoaxService.save(user, createValidHoax());
+            hoaxService.save(user, createValidHoax());
+
+            long hitsBefore = hotFeedCache.getHits();
+            ResponseEntity<Map<String, Long>> response = getNewHoaxCountOfUser(first.getId(), "user1", new ParameterizedTypeReference<Map<String, Long>>() {
+            });
+
+            assertThat(hotFeedCache.getHits()).isEqualTo(hitsBefore + 1);
+            assertThat(Objects.requireNonNull(response.getBody()).get("count")).isEqualTo(2);
+        } finally {
+            appConfiguration.setNewHoaxCountExact(false);
+        }
+    }
+
+
+    @Test
+    public void getNewHoaxCount_whenCounterIsLoaded_countsHoaxesSavedAndDeletedAfterwards() {
+        User user = userService.save(createValidUser("user1"));
+        Hoax first = hoaxService.save(user, createValidHoax());
+        assertThat(newHoaxCounter.getNewHoaxesCount(first.getId(), null)).hasValue(0);
+
+        hoaxService.save(user, createValidHoax());
+        Hoax third = hoaxService.save(user, createValidHoax());
+        hoaxService.deleteHoax(third.getId());
+
+        ResponseEntity<Map<String, Long>> response = getNewHoaxCount(first.getId(), new ParameterizedTypeReference<Map<String, Long>>() {
+        });
+        assertThat(Objects.requireNonNull(response.getBody()).get("count")).isEqualTo(1);
+    }
+
+
+    @Test
+    public void getNewHoaxCountOfUser_whenOtherUsersPost_countsOnlyHoaxesOfUser() {
+        User user1 = userService.save(createValidUser("user1"));
+        User user2 = userService.save(createValidUser("user2"));
+        Hoax first = hoaxService.save(user1, createValidHoax());
+        assertThat(newHoaxCounter.getNewHoaxesCount(first.getId(), "user1")).hasValue(0);
+
+        hoaxService.save(user2, createValidHoax());
+        hoaxService.save(user1, createValidHoax());
+        hoaxService.save(user2, createValidHoax());
+
+        assertThat(newHoaxCounter.getNewHoaxesCount(first.getId(), "user1")).hasValue(1);
+        assertThat(newHoaxCounter.getNewHoaxesCount(first.getId(), null)).hasValue(3);
+    }
+
+
+    @Test
+    public void getNewHoaxCount_whenMoreNewHoaxesThanCounterSize_receiveCounterSize() {
+        appConfiguration.setNewHoaxCounterSize(3);
+        try {
+            User user = userService.save(createValidUser("user1"));
+            Hoax first = hoaxService.save(user, createValidHoax());
+            IntStream.rangeClosed(1, 5).forEach(i -> hoaxService.save(user, createValidHoax()));
+
+            ResponseEntity<Map<String, Long>> response = getNewHoaxCount(first.getId(), new ParameterizedTypeReference<Map<String, Long>>() {
+            });
+            assertThat(Objects.requireNonNull(response.getBody()).get("count")).isEqualTo(3);
+        } finally {
+            appConfiguration.setNewHoaxCounterSize(500);
+        }
+    }
+
+
+    @Test
+    public void getNewHoaxCount_whenCountIsExact_counterDoesNotAnswer() {
+        appConfiguration.setNewHoaxCountExact(true);
+        try {
+            User user = userService.save(createValidUser("user1"));
+            Hoax first = hoaxService.save(user, createValidHoax());
+
+            assertThat(newHoaxCounter.getNewHoaxesCount(first.getId(), null)).isEmpty();
+        } finally {
+            appConfiguration.setNewHoaxCountExact(false);
+        }
+    }
+
+    @Test
+    public void postHoax_whenUserIsAuthorizedWithToken_receiveHoaxVMWithUserInfo() {
+        userService.save(createValidUser("user1"));
+        authenticate("user1");
+        String token = Objects.requireNonNull(testRestTemplate.postForEntity("/api/1.0/login", null, LoginVM.class).getBody()).getToken();
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        testRestTemplate.getRestTemplate().getInterceptors().add((request, body, execution) -> {
+            request.getHeaders().setBearerAuth(token);
+            return execution.execute(request, body);
+        });
+
+        final ResponseEntity<HoaxVM> response = postHoax(createValidHoax(), HoaxVM.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(Objects.requireNonNull(response.getBody()).getUser().getDisplayName()).isEqualTo("test-display");
     }
 
     //************************************************************************************
     //************************ METHODS ***************************************************
     //************************************************************************************
+    public <T> ResponseEntity<T> getNewestHoaxes(ParameterizedTypeReference<T> responseType) {
+        return testRestTemplate.exchange(API_1_0_HOAXES + "?sort=id,desc", HttpMethod.GET, null, responseType);
+    }
+
+
+    private HttpURLConnection openStream(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(testRestTemplate.getRootUri() + path).openConnection();
+        connection.setRequestProperty("Accept", "text/event-stream");
+        connection.setReadTimeout(5000);
+        return connection;
+    }
+
+
+    // lee el stream hasta el primer evento con ese nombre y devuelve su data
+    private String readUntilData(BufferedReader reader, String eventName) throws IOException {
+        boolean inEvent = false;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.equals("event:" + eventName)) {
+                inEvent = true;
+            } else if (inEvent && line.startsWith("data:")) {
+                return line.substring("data:".length());
+            } else if (line.isEmpty()) {
+                inEvent = false;
+            }
+        }
+        return null;
+    }
+
+
+    public <T> ResponseEntity<T> getHoaxesByCursor(String cursor, ParameterizedTypeReference<T> responseType) {
+        String path = API_1_0_HOAXES + "?cursor=" + cursor + "&size=5";
+        return testRestTemplate.exchange(path, HttpMethod.GET, null, responseType);
+    }
+
+
+    public <T> ResponseEntity<T> getHoaxesOfUserByCursor(String username, String cursor, ParameterizedTypeReference<T> responseType) {
+        String path = "/api/1.0/users/" + username + "/hoaxes?cursor=" + cursor + "&size=5";
+        return testRestTemplate.exchange(path, HttpMethod.GET, null, responseType);
+    }
+
+
+    public <T> ResponseEntity<T> getHoaxesWithoutTotals(String path, ParameterizedTypeReference<T> responseType) {
+        String url = path + (path.contains("?") ? "&" : "?") + "totals=false&size=5";
+        return testRestTemplate.exchange(url, HttpMethod.GET, null, responseType);
+    }
+
+
     public <T> ResponseEntity<T> deleteHoax(long hoaxId, Class<T> responseType) {
         return testRestTemplate.exchange(API_1_0_HOAXES + "/" + hoaxId, HttpMethod.DELETE, null, responseType);
     }
@@ -0,0 +1,231 @@
+package com.hoaxify;
+
+import com.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.file.FileAttachment;
+import com.hoaxify.file.FileAttachmentRepository;
+import com.hoaxify.hoax.FeedEntry;
+import com.hoaxify.hoax.FeedEntryRepository;
+import com.hoaxify.hoax.Hoax;
+import com.hoaxify.hoax.HoaxRepository;
+import com.hoaxify.hoax.HoaxService;
+import com.hoaxify.hoax.HoaxWriteBehind;
+import com.hoaxify.hoax.HotFeedCache;
+import com.hoaxify.hoax.NewHoaxCounter;
+import com.hoaxify.user.User;
+import com.hoaxify.user.UserService;
+import com.hoaxify.user.vm.UserUpdateVM;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Date;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.hoaxify.TestUtil.createValidHoax;
+import static com.hoaxify.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class HoaxWriteBehindTest {
+
+    @Autowired
+    AppConfiguration appConfiguration;
+
+    @Autowired
+    HoaxService hoaxService;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    HoaxRepository hoaxRepository;
+
+    @Autowired
+    FeedEntryRepository feedEntryRepository;
+
+    @Autowired
+    FileAttachmentRepository fileAttachmentRepository;
+
+    @Autowired
+    HotFeedCache hotFeedCache;
+
+    @Autowired
+    NewHoaxCounter newHoaxCounter;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    User user;
+
+    @Before
+    public void init() {
+        fileAttachmentRepository.deleteAll();
+        hoaxRepository.deleteAll();
+        userRepository.deleteAll();
+        cacheManager.getCache("users").clear();
+        hotFeedCache.clear();
+        newHoaxCounter.clear();
+        user = userService.save(createValidUser("user1"));
+        appConfiguration.setHoaxWriteBehind(true);
+    }
+
+    @After
+    public void cleanup() {
+        appConfiguration.setHoaxWriteBehind(false);
+        appConfiguration.setHoaxWriteBehindBatchSize(100);
+        appConfiguration.setHoaxWriteBehindMaxLatencyMillis(50);
+    }
+
+
+    @Test
+    public void save_whenWriteBehindIsEnabled_returnsIdBeforeHoaxIsInserted() {
+        appConfiguration.setHoaxWriteBehindMaxLatencyMillis(2000);
+
+        Hoax saved = hoaxService.save(user, createValidHoax());
+
+        assertThat(saved.getId()).isNotNull();
+        assertThat(hoaxRepository.existsById(saved.getId())).isFalse();
+        awaitUntil(() -> hoaxRepository.existsById(saved.getId()));
+    }
+
+
+    @Test
+    public void save_whenBatchSizeIsReached_insertsBatchWithoutWaitingForLatency() {
+        appConfiguration.setHoaxWriteBehindBatchSize(3);
+        appConfiguration.setHoaxWriteBehindMaxLatencyMillis(60000);
+
+        List<Long> ids = IntStream.rangeClosed(1, 3)
+                .mapToObj(i -> hoaxService.save(user, createValidHoax()).getId())
+                .collect(Collectors.toList());
+
+        awaitUntil(() -> hoaxRepository.count() == 3);
+        assertThat(hoaxRepository.findAllById(ids)).hasSize(3).allMatch(hoax -> hoax.getUser().getId().equals(user.getId()));
+        assertThat(feedEntryRepository.findAllById(ids)).hasSize(3).allMatch(entry -> entry.getUsername().equals("user1"));
+    }
+
+
+    @Test
+    public void save_whenHoaxHasAttachment_linksAttachmentAndCopiesItToFeedEntry() {
+        FileAttachment attachment = new FileAttachment();
+        attachment.setDate(new Date());
+        attachment.setName("attachment-name");
+        attachment.setFileType("image/png");
+        attachment = fileAttachmentRepository.save(attachment);
+        Hoax hoax = createValidHoax();
+        hoax.setAttachment(attachment);
+
+        Hoax saved = hoaxService.save(user, hoax);
+
+        awaitUntil(() -> feedEntryRepository.existsById(saved.getId()));
+        FeedEntry entry = feedEntryRepository.findById(saved.getId()).get();
+        assertThat(entry.getAttachmentName()).isEqualTo("attachment-name");
+        assertThat(fileAttachmentRepository.findById(attachment.getId()).get().getHoax()).isNotNull();
+    }
+
+
+    @Test
+    public void save_whenBatchIsInserted_publishesCreatedEventForFeeds() {
+        Hoax first = hoaxService.save(user, createValidHoax());
+        awaitUntil(() -> hoaxRepository.existsById(first.getId()));
+        assertThat(newHoaxCounter.getNewHoaxesCount(first.getId(), null)).hasValue(0);
+
+        hoaxService.save(user, createValidHoax());
+        hoaxService.save(user, createValidHoax());
+
+        awaitUntil(() -> newHoaxCounter.getNewHoaxesCount(first.getId(), null).getAsLong() == 2);
+    }
+
+
+    @Test
+    public void save_whenUserIsDeletedBeforeFlush_dropsOnlyThatHoax() {
+        appConfiguration.setHoaxWriteBehindMaxLatencyMillis(1000);
+        User other = userService.save(createValidUser("user2"));
+
+        Hoax kept = hoaxService.save(user, createValidHoax());
+        Hoax dropped = hoaxService.save(other, createValidHoax());
+        userRepository.deleteById(other.getId());
+
+        awaitUntil(() -> hoaxRepository.existsById(kept.getId()));
+        assertThat(hoaxRepository.existsById(dropped.getId())).isFalse();
+    }
+
+
+    @Test
+    public void save_whenUserIsUpdatedBeforeFlush_feedEntryHasNewDisplayName() {
+        appConfiguration.setHoaxWriteBehindMaxLatencyMillis(1000);
+
+        Hoax saved = hoaxService.save(user, createValidHoax());
+        UserUpdateVM userUpdate = new UserUpdateVM();
+        userUpdate.setDisplayName("updated-display");
+        userService.update(user.getId(), userUpdate);
+
+        awaitUntil(() -> feedEntryRepository.existsById(saved.getId()));
+        assertThat(feedEntryRepository.findById(saved.getId()).get().getDisplayName()).isEqualTo("updated-display");
+    }
+
+
+    @Test
+    public void shutdown_whenHoaxesArePending_insertsThemBeforeReturning() throws InterruptedException {
+        HoaxWriteBehind writeBehind = new HoaxWriteBehind(appConfiguration, jdbcTemplate, transactionManager,
+                eventPublisher, new SimpleMeterRegistry());
+        appConfiguration.setHoaxWriteBehindMaxLatencyMillis(60000);
+        Hoax hoax = createValidHoax();
+        hoax.setId(1_000_000L);
+        hoax.setTimestamp(new Date());
+        hoax.setUser(user);
+        assertThat(writeBehind.offer(hoax)).isTrue();
+
+        writeBehind.shutdown();
+
+        assertThat(hoaxRepository.existsById(hoax.getId())).isTrue();
+    }
+
+
+
+
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+    private void awaitUntil(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in 5s").isLessThan(deadline);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+}
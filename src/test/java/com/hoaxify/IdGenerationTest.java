@@ -0,0 +1,108 @@
+package com.hoaxify;
+
+import com.hoaxify.hoax.Hoax;
+import com.hoaxify.user.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static com.hoaxify.TestUtil.createValidHoax;
+import static com.hoaxify.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+public class IdGenerationTest {
+
+    @Autowired
+    TestEntityManager testEntityManager;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    Statistics statistics;
+
+    User user;
+
+    @Before
+    public void init() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        user = testEntityManager.persist(createValidUser("user1"));
+    }
+
+
+    @Test
+    public void sequences_incrementByAllocationSize() {
+        List<Long> increments = jdbcTemplate.queryForList("select increment from information_schema.sequences " +
+                "where sequence_name in ('USER_SEQ', 'HOAX_SEQ', 'FILE_ATTACHMENT_SEQ')", Long.class);
+
+        assertThat(increments).containsExactly(50L, 50L, 50L);
+    }
+
+
+    @Test
+    public void persist_whenFiftyHoaxesAreSaved_takesAtMostOneBlockFromSequence() {
+        long before = currentHoaxSequenceValue();
+
+        List<Long> ids = persistHoaxes(50);
+
+        // con un insert por valor de la secuencia avanzaria 50 veces
+        assertThat(currentHoaxSequenceValue() - before).isLessThanOrEqualTo(50);
+        for (int i = 1; i < ids.size(); i++) {
+            assertThat(ids.get(i)).isEqualTo(ids.get(i - 1) + 1);
+        }
+    }
+
+
+    @Test
+    public void flush_whenFiftyHoaxesArePending_insertsThemInOneJdbcBatch() {
+        testEntityManager.flush();
+        persistHoaxes(50);
+        statistics.clear();
+
+        testEntityManager.flush();
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+
+
+
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+    private List<Long> persistHoaxes(int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Hoax hoax = createValidHoax();
+            hoax.setTimestamp(new Date());
+            hoax.setUser(user);
+            ids.add(testEntityManager.persist(hoax).getId());
+        }
+        return ids;
+    }
+
+    private long currentHoaxSequenceValue() {
+        return jdbcTemplate.queryForObject("select current_value from information_schema.sequences where sequence_name = 'HOAX_SEQ'", Long.class);
+    }
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+}
@@ -1,14 +1,18 @@
 package com.hoaxify;
 
+import com.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.configuration.TokenService;
 import com.hoaxify.error.ApiError;
 import com.hoaxify.user.User;
 import com.hoaxify.user.UserService;
+import com.hoaxify.user.vm.LoginVM;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.cache.CacheManager;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
@@ -22,6 +26,7 @@ import java.util.Objects;
 
 import static com.hoaxify.TestUtil.createValidUser;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(webEnvironment =  SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -36,12 +41,19 @@ public class LoginControllerTest {
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    CacheManager cacheManager;
+
     @Autowired
     UserService userService;
 
+    @Autowired
+    AppConfiguration appConfiguration;
+
     @Before
     public void cleanup(){
         userRepository.deleteAll();
+        cacheManager.getCache("users").clear();
         testRestTemplate.getRestTemplate().getInterceptors().clear();
     }
 
@@ -112,6 +124,20 @@ public class LoginControllerTest {
     }
 
 
+    @Test
+    public void postLogin_withValidCredentials_whenUserHasNoImage_receiveNullImage(){
+        User user = createValidUser();
+        user.setImage(null);
+        userService.save(user);
+        authenticate();
+        ResponseEntity<Map<String,Object>> response = login(new ParameterizedTypeReference<Map<String, Object>>() {});
+
+        Map<String, Object> body = response.getBody();
+        assertThat(body).containsKey("image");
+        assertThat(body.get("image")).isNull();
+    }
+
+
     @Test
     public void postLogin_withValidCredentials_receiveLoggedInUserDisplayName(){
         User inDB = userService.save(createValidUser());
@@ -147,6 +173,99 @@ public class LoginControllerTest {
     }
 
 
+    @Test
+    public void postLogin_withValidCredentials_receiveToken(){
+        userService.save(createValidUser());
+        authenticate();
+        ResponseEntity<Map<String,Object>> response = login(new ParameterizedTypeReference<Map<String, Object>>() {});
+
+        Map<String, Object> body = response.getBody();
+        assertThat((String) body.get("token")).isNotBlank();
+    }
+
+
+    @Test
+    public void postLogin_withValidToken_receiveLoggedInUserDisplayName(){
+        User inDB = userService.save(createValidUser());
+        authenticate();
+        String token = login(LoginVM.class).getBody().getToken();
+
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        authenticateWithToken(token);
+        ResponseEntity<LoginVM> response = login(LoginVM.class);
+        assertThat(response.getBody().getDisplayName()).isEqualTo(inDB.getDisplayName());
+    }
+
+
+    @Test
+    public void postLogin_withTamperedToken_receiveUnauthorized(){
+        userService.save(createValidUser());
+        authenticate();
+        String token = login(LoginVM.class).getBody().getToken();
+
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        authenticateWithToken("x" + token);
+        final ResponseEntity<Object> response = login(Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+
+    @Test
+    public void getUsers_withBasicCredentialsWhenBasicAuthIsDisabled_receiveUnauthorized(){
+        appConfiguration.setBasicAuthEnabled(false);
+        try {
+            userService.save(createValidUser());
+            authenticate();
+            ResponseEntity<Object> response = testRestTemplate.getForEntity("/api/1.0/users", Object.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        } finally {
+            appConfiguration.setBasicAuthEnabled(true);
+        }
+    }
+
+
+    @Test
+    public void postLogin_withBasicCredentialsWhenBasicAuthIsDisabled_receiveOk(){
+        appConfiguration.setBasicAuthEnabled(false);
+        try {
+            userService.save(createValidUser());
+            authenticate();
+            ResponseEntity<Object> response = login(Object.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        } finally {
+            appConfiguration.setBasicAuthEnabled(true);
+        }
+    }
+
+
+    @Test
+    public void tokenService_whenSecretIsRequiredAndNotConfigured_failsOnStartup(){
+        AppConfiguration configuration = new AppConfiguration();
+        configuration.setTokenSecretRequired(true);
+
+        assertThatThrownBy(() -> new TokenService(configuration)).isInstanceOf(IllegalStateException.class);
+    }
+
+
+    @Test
+    public void tokenService_whenSecretIsRequiredButTokenAuthIsDisabled_starts(){
+        AppConfiguration configuration = new AppConfiguration();
+        configuration.setTokenSecretRequired(true);
+        configuration.setTokenAuthEnabled(false);
+
+        assertThat(new TokenService(configuration)).isNotNull();
+    }
+
+
+    private void authenticateWithToken(String token) {
+        testRestTemplate.getRestTemplate()
+                .getInterceptors().add((request, body, execution) -> {
+                    request.getHeaders().setBearerAuth(token);
+                    return execution.execute(request, body);
+                });
+    }
+
+
     private void authenticate() {
         testRestTemplate.getRestTemplate()
                 .getInterceptors().add(new BasicAuthenticationInterceptor("test-user", "P4ssword"));
@@ -0,0 +1,130 @@
+package com.hoaxify;
+
+import com.hoaxify.file.FileAttachmentRepository;
+import com.hoaxify.hoax.HoaxRepository;
+import com.hoaxify.hoax.HotFeedCache;
+import com.hoaxify.user.UserService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.web.server.LocalManagementPort;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.support.BasicAuthenticationInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static com.hoaxify.TestUtil.createValidHoax;
+import static com.hoaxify.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "management.server.port=0")
+@ActiveProfiles("test")
+@AutoConfigureMetrics
+public class MetricsTest {
+
+    private static final String PROMETHEUS = "/actuator/prometheus";
+
+    @LocalManagementPort
+    int managementPort;
+
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    HoaxRepository hoaxRepository;
+
+    @Autowired
+    FileAttachmentRepository fileAttachmentRepository;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    HotFeedCache hotFeedCache;
+
+    @Before
+    public void cleanup() {
+        fileAttachmentRepository.deleteAll();
+        hoaxRepository.deleteAll();
+        userRepository.deleteAll();
+        cacheManager.getCache("users").clear();
+        hotFeedCache.clear();
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+    }
+
+
+    @Test
+    public void getPrometheus_whenAppIsRunning_receiveOk() {
+        ResponseEntity<String> response = testRestTemplate.getForEntity(prometheusUrl(), String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+
+    @Test
+    public void getPrometheus_whenHoaxIsPosted_containsServiceTimersAndPasswordTimers() {
+        userService.save(createValidUser("user1"));
+        testRestTemplate.getRestTemplate().getInterceptors().add(new BasicAuthenticationInterceptor("user1", "P4ssword"));
+        testRestTemplate.postForEntity("/api/1.0/hoaxes", createValidHoax(), Object.class);
+
+        String body = testRestTemplate.getForObject(prometheusUrl(), String.class);
+        assertThat(body)
+                .contains("hoaxify_hoax_save_seconds_count")
+                .contains("hoaxify_user_save_seconds_count")
+                .contains("hoaxify_password_encode_seconds_count")
+                .contains("hoaxify_password_matches_seconds_count");
+    }
+
+
+    @Test
+    public void getPrometheus_whenFeedIsRequested_containsEndpointLatencyHistogram() {
+        testRestTemplate.getForEntity("/api/1.0/hoaxes", Object.class);
+
+        String body = testRestTemplate.getForObject(prometheusUrl(), String.class);
+        assertThat(body).contains("http_server_requests_seconds_bucket{exception=\"None\",method=\"GET\"");
+        assertThat(body).contains("uri=\"/api/1.0/hoaxes\"");
+    }
+
+
+    @Test
+    public void getPrometheus_whenFeedIsRequested_containsHotFeedAndUsersCacheMetrics() {
+        testRestTemplate.getForEntity("/api/1.0/hoaxes", Object.class);
+
+        String body = testRestTemplate.getForObject(prometheusUrl(), String.class);
+        assertThat(body).contains("hoaxify_hotfeed_requests_total{result=\"hit\"");
+        assertThat(body).contains("cache_gets_total{cache=\"users\"");
+    }
+
+
+    @Test
+    public void getPrometheus_whenCalledOnApplicationPort_isNotServed() {
+        ResponseEntity<String> response = testRestTemplate.getForEntity(PROMETHEUS, String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(response.getBody()).doesNotContain("hoaxify_");
+    }
+
+
+
+
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+    private String prometheusUrl() {
+        return "http://localhost:" + managementPort + PROMETHEUS;
+    }
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+}
@@ -0,0 +1,221 @@
+package com.hoaxify;
+
+import com.hoaxify.file.FileAttachment;
+import com.hoaxify.file.FileAttachmentRepository;
+import com.hoaxify.hoax.FeedEntry;
+import com.hoaxify.hoax.FeedEntryRepository;
+import com.hoaxify.hoax.Hoax;
+import com.hoaxify.user.User;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static com.hoaxify.TestUtil.createValidHoax;
+import static com.hoaxify.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Corre cada metodo de repositorio del feed, del login y de la limpieza, toma el SQL que genera Hibernate
+// y revisa con EXPLAIN de H2 que ninguna tabla se recorra entera (tableScan) con los indices de db/migration
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@ActiveProfiles("test")
+public class QueryPlanTest {
+
+    @TestConfiguration
+    static class SqlCaptureConfig {
+
+        @Bean
+        SqlCapture sqlCapture() {
+            return new SqlCapture();
+        }
+
+        @Bean
+        HibernatePropertiesCustomizer statementInspector(SqlCapture sqlCapture) {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, sqlCapture);
+        }
+    }
+
+    static class SqlCapture implements StatementInspector {
+
+        final List<String> selects = new ArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.trim().toLowerCase().startsWith("select")) {
+                selects.add(sql);
+            }
+            return sql;
+        }
+    }
+
+    @Autowired
+    TestEntityManager testEntityManager;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    SqlCapture sqlCapture;
+
+    @Autowired
+    FeedEntryRepository feedEntryRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    FileAttachmentRepository fileAttachmentRepository;
+
+    User user;
+
+    @Before
+    public void init() {
+        user = testEntityManager.persist(createValidUser("user1"));
+        User otherUser = testEntityManager.persist(createValidUser("user2"));
+        for (int i = 0; i < 20; i++) {
+            persistHoax(i % 2 == 0 ? user : otherUser);
+        }
+        testEntityManager.flush();
+        testEntityManager.clear();
+        sqlCapture.selects.clear();
+    }
+
+
+    @Test
+    public void feedFindByUserId_usesUserIdIndex() {
+        feedEntryRepository.findByUserId(user.getId(), newestFirst());
+
+        assertPlan(sqlCapture.selects.get(0), "IDX_FEED_ENTRY_USER_ID", user.getId(), 10);
+    }
+
+    @Test
+    public void feedFindByIdLessThanAndUserId_usesUserIdIndex() {
+        feedEntryRepository.findByIdLessThanAndUserId(Long.MAX_VALUE, user.getId(), newestFirst());
+
+        assertPlan(lastSelect(), "IDX_FEED_ENTRY_USER_ID", Long.MAX_VALUE, user.getId(), 11);
+    }
+
+    @Test
+    public void feedFindByIdLessThan_usesPrimaryKey() {
+        feedEntryRepository.findByIdLessThan(Long.MAX_VALUE, newestFirst());
+
+        assertPlan(lastSelect(), "PRIMARY_KEY", Long.MAX_VALUE, 11);
+    }
+
+    @Test
+    public void feedSpecIdGreaterThanAndUserIs_usesUserIdIndex() {
+        Specification<FeedEntry> spec = (root, query, cb) -> cb.and(cb.greaterThan(root.get("id"), 0L),
+                cb.equal(root.get("userId"), user.getId()));
+        feedEntryRepository.findAll(spec, Sort.by(Sort.Direction.DESC, "id"));
+
+        // Hibernate escribe los literales numericos de la spec en el SQL, no quedan parametros
+        assertPlan(lastSelect(), "IDX_FEED_ENTRY_USER_ID");
+    }
+
+    @Test
+    public void feedFindNewestIdsByUserId_usesUserIdIndex() {
+        feedEntryRepository.findNewestIdsByUserId(user.getId(), PageRequest.of(0, 10));
+
+        assertPlan(lastSelect(), "IDX_FEED_ENTRY_USER_ID", user.getId(), 10);
+    }
+
+    @Test
+    public void userFindByUsername_usesUsernameIndex() {
+        userRepository.findByUsername("user1");
+
+        assertPlan(lastSelect(), "IDX_USER_USERNAME", "user1");
+    }
+
+    @Test
+    public void userFindSnapshotByUsername_usesUsernameIndex() {
+        userRepository.findSnapshotByUsername("user1");
+
+        assertPlan(lastSelect(), "IDX_USER_USERNAME", "user1");
+    }
+
+    @Test
+    public void userCountByImage_usesImageIndex() {
+        userRepository.countByImage("profile.png");
+
+        assertPlan(lastSelect(), "IDX_USER_IMAGE", "profile.png");
+    }
+
+    @Test
+    public void attachmentFindOrphanBatch_usesHoaxIdDateIndex() {
+        fileAttachmentRepository.findByDateBeforeAndHoaxIsNullAndIdGreaterThan(new Date(), 0, PageRequest.of(0, 10, Sort.by("id")));
+
+        assertPlan(lastSelect(), "IDX_FILE_ATTACHMENT_HOAX_ID_DATE", new Date(), 0L, 10);
+    }
+
+    @Test
+    public void attachmentCountByName_usesNameIndex() {
+        fileAttachmentRepository.countByName("attachment");
+
+        assertPlan(lastSelect(), "IDX_FILE_ATTACHMENT_NAME", "attachment");
+    }
+
+    @Test
+    public void attachmentCountByNameAndIdNotIn_usesNameIndex() {
+        fileAttachmentRepository.countByNameAndIdNotIn("attachment", Collections.singletonList(1L));
+
+        assertPlan(lastSelect(), "IDX_FILE_ATTACHMENT_NAME", "attachment", 1L);
+    }
+
+
+
+
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+    private void persistHoax(User owner) {
+        Hoax hoax = createValidHoax();
+        hoax.setTimestamp(new Date());
+        hoax.setUser(owner);
+        testEntityManager.persist(hoax);
+        FileAttachment fileAttachment = new FileAttachment();
+        fileAttachment.setDate(new Date());
+        fileAttachment.setName("attachment-" + hoax.getId());
+        fileAttachment.setFileType("image/png");
+        fileAttachment.setHoax(hoax);
+        hoax.setAttachment(testEntityManager.persist(fileAttachment));
+        testEntityManager.persist(new FeedEntry(hoax));
+    }
+
+    private String lastSelect() {
+        assertThat(sqlCapture.selects).isNotEmpty();
+        return sqlCapture.selects.get(sqlCapture.selects.size() - 1);
+    }
+
+    // expected: nombre del indice o condicion que tiene que aparecer en el plan
+    private void assertPlan(String sql, String expected, Object... params) {
+        String plan = jdbcTemplate.queryForObject("explain " + sql, String.class, params);
+        assertThat(plan).as(plan).doesNotContainIgnoringCase("tableScan");
+        assertThat(plan).as(plan).containsIgnoringCase(expected);
+    }
+
+    private PageRequest newestFirst() {
+        return PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "id"));
+    }
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+}
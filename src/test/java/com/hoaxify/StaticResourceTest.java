@@ -1,6 +1,8 @@
 package com.hoaxify;
 
 import com.hoaxify.configuration.AppConfiguration;
+import com.hoaxify.file.FileService;
+import com.hoaxify.file.ProfileImageVariantService;
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
 import org.junit.Test;
@@ -8,15 +10,23 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.Random;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -34,6 +44,15 @@ public class StaticResourceTest {
     @Autowired
     MockMvc mockMvc;
 
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    FileService fileService;
+
+    @Autowired
+    ProfileImageVariantService profileImageVariantService;
+
     @Test
     public void checkStaticFolder_whenAppIsInitialized_uploadFolderMustExist(){
         File uploadFolder = new File(appConfiguration.getUploadPath());
@@ -112,6 +131,179 @@ public class StaticResourceTest {
 
 
 
+    @Test
+    public void getStaticFile_whenImageExists_receiveContentTypeAndValidators() throws Exception {
+        File target = copyToAttachments("profile-picture.png");
+
+        MvcResult result = mockMvc.perform(get("/images/"+appConfiguration.getAttachmentFolder()+"/profile-picture.png"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(result.getResponse().getContentType()).isEqualTo("image/png");
+        assertThat(result.getResponse().getHeader("ETag")).isNotBlank();
+        assertThat(result.getResponse().getHeader("Last-Modified")).isNotBlank();
+        assertThat(result.getResponse().getContentAsByteArray()).isEqualTo(FileUtils.readFileToByteArray(target));
+    }
+
+
+    @Test
+    public void getStaticFile_whenIfNoneMatchIsCurrentETag_receiveNotModified() throws Exception {
+        copyToAttachments("profile-picture.png");
+        String url = "/images/"+appConfiguration.getAttachmentFolder()+"/profile-picture.png";
+        String eTag = mockMvc.perform(get(url)).andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get(url).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+    }
+
+
+    @Test
+    public void getStaticFile_whenIfModifiedSinceIsLastModified_receiveNotModified() throws Exception {
+        copyToAttachments("profile-picture.png");
+        String url = "/images/"+appConfiguration.getAttachmentFolder()+"/profile-picture.png";
+        String lastModified = mockMvc.perform(get(url)).andReturn().getResponse().getHeader("Last-Modified");
+
+        mockMvc.perform(get(url).header("If-Modified-Since", lastModified))
+                .andExpect(status().isNotModified());
+    }
+
+
+    @Test
+    public void getStaticFile_whenRangeIsRequested_receivePartialContent() throws Exception {
+        File target = copyToAttachments("profile-picture.png");
+        byte[] fileArr = FileUtils.readFileToByteArray(target);
+
+        MvcResult result = mockMvc.perform(get("/images/"+appConfiguration.getAttachmentFolder()+"/profile-picture.png")
+                .header("Range", "bytes=10-19"))
+                .andExpect(status().isPartialContent())
+                .andReturn();
+
+        assertThat(result.getResponse().getHeader("Content-Range")).isEqualTo("bytes 10-19/" + fileArr.length);
+        assertThat(result.getResponse().getContentAsByteArray()).isEqualTo(Arrays.copyOfRange(fileArr, 10, 20));
+    }
+
+
+    @Test
+    public void getStaticFile_whenRangeStartsAfterEndOfFile_receiveRangeNotSatisfiable() throws Exception {
+        File target = copyToAttachments("profile-picture.png");
+
+        mockMvc.perform(get("/images/"+appConfiguration.getAttachmentFolder()+"/profile-picture.png")
+                .header("Range", "bytes=" + (target.length() + 10) + "-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable());
+    }
+
+
+    @Test
+    public void getStaticFile_whenIfRangeDoesNotMatch_receiveWholeFile() throws Exception {
+        copyToAttachments("profile-picture.png");
+
+        mockMvc.perform(get("/images/"+appConfiguration.getAttachmentFolder()+"/profile-picture.png")
+                .header("Range", "bytes=10-19")
+                .header("If-Range", "\"old-etag\""))
+                .andExpect(status().isOk());
+    }
+
+
+    @Test
+    public void getStaticFile_whenFolderIsNotAnUploadFolder_receiveNotFound() throws Exception {
+        mockMvc.perform(get("/images/other/profile-picture.png"))
+                .andExpect(status().isNotFound());
+    }
+
+
+    @Test
+    public void getStaticFile_whenFileWasDeleted_receiveNotFound() throws Exception {
+        copyToAttachments("profile-picture.png");
+        String url = "/images/"+appConfiguration.getAttachmentFolder()+"/profile-picture.png";
+        mockMvc.perform(get(url)).andExpect(status().isOk());
+
+        fileService.deleteAttachmentImage("profile-picture.png");
+
+        mockMvc.perform(get(url)).andExpect(status().isNotFound());
+    }
+
+
+    @Test
+    public void getStaticFile_whenLargeFileIsRequestedOverHttp_receiveWholeFile() throws Exception {
+        byte[] fileArr = new byte[256 * 1024];
+        new Random(1).nextBytes(fileArr);
+        FileUtils.writeByteArrayToFile(new File(appConfiguration.getFullAttachmentsPath() + "/large-file"), fileArr);
+
+        ResponseEntity<byte[]> response = testRestTemplate.getForEntity(
+                "/images/"+appConfiguration.getAttachmentFolder()+"/large-file", byte[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(fileArr);
+    }
+
+
+    @Test
+    public void getStaticFile_whenVariantSizeIsRequested_receiveSquareImageOfThatSize() throws Exception {
+        copyToProfile("avatar");
+        profileImageVariantService.generateVariants("avatar");
+
+        MvcResult result = mockMvc.perform(get("/images/"+appConfiguration.getProfileImagesFolder()+"/avatar").param("size", "64"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()));
+        assertThat(image.getWidth()).isEqualTo(64);
+        assertThat(image.getHeight()).isEqualTo(64);
+    }
+
+
+    @Test
+    public void getStaticFile_whenVariantIsNotGeneratedYet_receiveOriginalWithShortCache() throws Exception {
+        File target = copyToProfile("avatar");
+
+        MvcResult result = mockMvc.perform(get("/images/"+appConfiguration.getProfileImagesFolder()+"/avatar").param("size", "64"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsByteArray()).isEqualTo(FileUtils.readFileToByteArray(target));
+        assertThat(result.getResponse().getHeader("Cache-Control")).isEqualTo("max-age=60");
+    }
+
+
+    @Test
+    public void getStaticFile_whenVariantSizeIsNotSupported_receiveBadRequest() throws Exception {
+        copyToProfile("avatar");
+
+        mockMvc.perform(get("/images/"+appConfiguration.getProfileImagesFolder()+"/avatar").param("size", "100"))
+                .andExpect(status().isBadRequest());
+    }
+
+
+    @Test
+    public void getStaticFile_whenVariantSizeIsRequestedForAttachment_receiveBadRequest() throws Exception {
+        copyToAttachments("profile-picture.png");
+
+        mockMvc.perform(get("/images/"+appConfiguration.getAttachmentFolder()+"/profile-picture.png").param("size", "64"))
+                .andExpect(status().isBadRequest());
+    }
+
+
+
+
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+    private File copyToAttachments(String fileName) throws IOException {
+        File target = new File(appConfiguration.getFullAttachmentsPath() + "/" + fileName);
+        FileUtils.copyFile(new ClassPathResource("profile.png").getFile(), target);
+        return target;
+    }
+
+    private File copyToProfile(String fileName) throws IOException {
+        File target = new File(appConfiguration.getFullProfileImagePath() + "/" + fileName);
+        FileUtils.copyFile(new ClassPathResource("profile.png").getFile(), target);
+        return target;
+    }
+    //************************************************************************************
+    //************************ METHODS ***************************************************
+    //************************************************************************************
+
+
 
     @After
     public void cleanup() throws IOException {
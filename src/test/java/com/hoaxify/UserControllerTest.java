@@ -1,13 +1,20 @@
 package com.hoaxify;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.hoaxify.configuration.AppConfiguration;
 import com.hoaxify.error.ApiError;
+import com.hoaxify.file.BlobStore;
+import com.hoaxify.file.ProfileImageVariantService;
+import com.hoaxify.shared.Base64Image;
 import com.hoaxify.shared.GenericResponse;
+import com.hoaxify.shared.SlicePage;
 import com.hoaxify.user.User;
 import com.hoaxify.user.UserService;
+import com.hoaxify.user.UserSnapshot;
 import com.hoaxify.user.vm.UserUpdateVM;
 import com.hoaxify.user.vm.UserVM;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -15,24 +22,39 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.support.BasicAuthenticationInterceptor;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
-
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.zip.CRC32;
 
 import static com.hoaxify.TestUtil.createValidUser;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -50,15 +72,25 @@ public class UserControllerTest {
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    CacheManager cacheManager;
+
     @Autowired
     UserService userService;
 
     @Autowired
     AppConfiguration appConfiguration;
 
+    @Autowired
+    BlobStore blobStore;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
     @Before
     public void cleanup() {
         userRepository.deleteAll();
+        cacheManager.getCache("users").clear();
         testRestTemplate.getRestTemplate().getInterceptors().clear();
     }
 
@@ -389,6 +421,39 @@ public class UserControllerTest {
     }
 
 
+    @Test
+    public void getUsers_whenTotalsFalse_receiveSliceWithHasNextAndWithoutTotals() {
+        IntStream.rangeClosed(1, 5)
+                .mapToObj(i -> "test-user-" + i)
+                .map(TestUtil::createValidUser)
+                .forEach(userRepository::save);
+
+        String path = API_1_0_USERS + "?totals=false&page=0&size=3";
+        final ResponseEntity<Map<String, Object>> response = getUsers(path, new ParameterizedTypeReference<Map<String, Object>>() {
+        });
+        Map<String, Object> body = Objects.requireNonNull(response.getBody());
+        assertThat((List<?>) body.get("content")).hasSize(3);
+        assertThat(body.get("hasNext")).isEqualTo(true);
+        assertThat(body).doesNotContainKeys("totalElements", "totalPages");
+    }
+
+
+    @Test
+    public void getUsers_whenTotalsFalseAndUserLoggedIn_receiveSliceWithoutLoggedInUser() {
+        userService.save(createValidUser("user1"));
+        userService.save(createValidUser("user2"));
+        userService.save(createValidUser("user3"));
+
+        authenticate("user1");
+        String path = API_1_0_USERS + "?totals=false";
+        ResponseEntity<SlicePage<UserVM>> response = getUsers(path, new ParameterizedTypeReference<SlicePage<UserVM>>() {
+        });
+        SlicePage<UserVM> page = Objects.requireNonNull(response.getBody());
+        assertThat(page.getContent()).hasSize(2).noneMatch(user -> user.getUsername().equals("user1"));
+        assertThat(page.isHasNext()).isFalse();
+    }
+
+
     @Test
     public void getUserByUsername_whenUserExist_receiveOk() {
         String username = "test-user";
@@ -428,6 +493,13 @@ public class UserControllerTest {
     }
 
 
+    @Test
+    public void postUserImage_whenUnauthorizedUserSendsTheRequest_receiveUnauthorized() {
+        final ResponseEntity<Object> response = postUserImage(123, "profile.png", Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+
     @Test
     public void putUser_whenAuthorizedUserSendsUpdateForAnotherUser_receiveForbidden() {
         User user = userService.save(createValidUser("user1"));
@@ -503,7 +575,7 @@ public class UserControllerTest {
 
         UserUpdateVM updateUser = createValidUserUpdateVM();
         String imageString = readFileToBase64("profile.png");
-        updateUser.setImage(imageString);
+        updateUser.setImage(new Base64Image(imageString));
 
         HttpEntity<UserUpdateVM> requestEntity = new HttpEntity<>(updateUser);
         final ResponseEntity<UserVM> response = putUser(user.getId(), requestEntity, UserVM.class);
@@ -512,6 +584,22 @@ public class UserControllerTest {
     }
 
 
+    @Test
+    public void putUser_withSupportedImageWhenFileIoIsAsync_receiveUserVMWithRandomImageName() throws IOException {
+        appConfiguration.setFileIoAsync(true);
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+
+        UserUpdateVM updateUser = createValidUserUpdateVM();
+        updateUser.setImage(new Base64Image(readFileToBase64("profile.png")));
+
+        final ResponseEntity<UserVM> response = putUser(user.getId(), new HttpEntity<>(updateUser), UserVM.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(Objects.requireNonNull(response.getBody()).getImage()).isNotEqualTo("profile-image.png");
+    }
+
+
     @Test
     public void putUser_withValidRequestBodyWithSupportedImageFromAuthorizedUser_imageIsStoredUnderProfileFolder() throws IOException {
         User user = userService.save(createValidUser("user1"));
@@ -519,18 +607,14 @@ public class UserControllerTest {
 
         UserUpdateVM updateUser = createValidUserUpdateVM();
         String imageString = readFileToBase64("profile.png");
-        updateUser.setImage(imageString);
+        updateUser.setImage(new Base64Image(imageString));
 
         HttpEntity<UserUpdateVM> requestEntity = new HttpEntity<>(updateUser);
         final ResponseEntity<UserVM> response = putUser(user.getId(), requestEntity, UserVM.class);
 
         String storedImageName = Objects.requireNonNull(response.getBody()).getImage();
 
-        String profilePicturePath = appConfiguration.getFullProfileImagePath() + "/" + storedImageName;
-
-        File storedImage = new File(profilePicturePath);
-
-        assertThat(storedImage).exists();
+        assertThat(blobStore.exists(appConfiguration.getProfileImagesFolder(), storedImageName)).isTrue();
     }
 
 
@@ -587,7 +671,7 @@ public class UserControllerTest {
 
         UserUpdateVM updateUser = createValidUserUpdateVM();
         String imageString = readFileToBase64("test-jpg.jpg");
-        updateUser.setImage(imageString);
+        updateUser.setImage(new Base64Image(imageString));
 
         HttpEntity<UserUpdateVM> requestEntity = new HttpEntity<>(updateUser);
         final ResponseEntity<UserVM> response = putUser(user.getId(), requestEntity, UserVM.class);
@@ -603,7 +687,7 @@ public class UserControllerTest {
 
         UserUpdateVM updateUser = createValidUserUpdateVM();
         String imageString = readFileToBase64("test-gif.gif");
-        updateUser.setImage(imageString);
+        updateUser.setImage(new Base64Image(imageString));
 
         HttpEntity<UserUpdateVM> requestEntity = new HttpEntity<>(updateUser);
         final ResponseEntity<Object> response = putUser(user.getId(), requestEntity, Object.class);
@@ -619,7 +703,23 @@ public class UserControllerTest {
 
         UserUpdateVM updateUser = createValidUserUpdateVM();
         String imageString = readFileToBase64("test-txt.txt");
-        updateUser.setImage(imageString);
+        updateUser.setImage(new Base64Image(imageString));
+
+        HttpEntity<UserUpdateVM> requestEntity = new HttpEntity<>(updateUser);
+        final ResponseEntity<ApiError> response = putUser(user.getId(), requestEntity, ApiError.class);
+
+        Map<String, String> validationErrors = Objects.requireNonNull(response.getBody()).getValidationErrors();
+        assertThat(validationErrors.get("image")).isEqualTo("Only PNG and JPG files are allowed");
+    }
+
+
+    @Test
+    public void putUser_withImageThatIsNotBase64_receivedValidationErrorForProfileImage() {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+
+        UserUpdateVM updateUser = createValidUserUpdateVM();
+        updateUser.setImage(new Base64Image("not base64 at all!"));
 
         HttpEntity<UserUpdateVM> requestEntity = new HttpEntity<>(updateUser);
         final ResponseEntity<ApiError> response = putUser(user.getId(), requestEntity, ApiError.class);
@@ -630,6 +730,28 @@ public class UserControllerTest {
 
 
 
+    @Test
+    public void putUser_withImageCorruptAfterValidHeader_receiveBadRequestAndKeepUserUnchanged() throws IOException {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+
+        byte[] png = FileUtils.readFileToByteArray(new ClassPathResource("profile.png").getFile());
+        StringBuilder imageString = new StringBuilder(Base64.getEncoder().encodeToString(Arrays.copyOf(png, png.length + 300 * 1024)));
+        // la validacion solo decodifica el comienzo, el caracter invalido aparece recien al guardar
+        imageString.replace(imageString.length() - 100, imageString.length() - 92, "!!!!!!!!");
+        UserUpdateVM updateUser = createValidUserUpdateVM();
+        updateUser.setImage(new Base64Image(imageString.toString()));
+
+        final ResponseEntity<Object> response = putUser(user.getId(), new HttpEntity<>(updateUser), Object.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        User inDB = userRepository.findByUsername("user1");
+        assertThat(inDB.getImage()).isEqualTo(user.getImage());
+        assertThat(inDB.getDisplayName()).isEqualTo(user.getDisplayName());
+        assertThat(FileUtils.listFiles(new File(appConfiguration.getFullProfileImagePath()), null, true)).isEmpty();
+    }
+
+
     @Test
     public void putUser_withValidRequestBodyWithJPGImageForUserWhoHasImage_removeOldImageFromStorage() throws IOException {
         User user = userService.save(createValidUser("user1"));
@@ -637,26 +759,216 @@ public class UserControllerTest {
 
         UserUpdateVM updateUser = createValidUserUpdateVM();
         String imageString = readFileToBase64("test-jpg.jpg");
-        updateUser.setImage(imageString);
+        updateUser.setImage(new Base64Image(imageString));
 
         HttpEntity<UserUpdateVM> requestEntity = new HttpEntity<>(updateUser);
         final ResponseEntity<UserVM> response = putUser(user.getId(), requestEntity, UserVM.class);
 
         putUser(user.getId(), requestEntity, UserVM.class);
         String storedImageName = Objects.requireNonNull(response.getBody()).getImage();
-        String profilePicturePath = appConfiguration.getFullProfileImagePath() + "/" + storedImageName;
+        assertThat(blobStore.exists(appConfiguration.getProfileImagesFolder(), storedImageName)).isFalse();
+    }
+
+
+    @Test
+    public void updateUser_whenTransactionRollsBack_oldImageStaysInStorage() throws IOException {
+        User user = userService.save(createValidUser("user1"));
+        UserUpdateVM updateUser = createValidUserUpdateVM();
+        updateUser.setImage(new Base64Image(readFileToBase64("profile.png")));
+        String oldImage = userService.update(user.getId(), updateUser).getImage();
+        updateUser.setImage(new Base64Image(readFileToBase64("test-jpg.jpg")));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            userService.update(user.getId(), updateUser);
+            status.setRollbackOnly();
+        });
+
+        assertThat(userRepository.findById(user.getId()).get().getImage()).isEqualTo(oldImage);
+        assertThat(blobStore.exists(appConfiguration.getProfileImagesFolder(), oldImage)).isTrue();
+    }
+
+
+    @Test
+    public void putUser_withValidRequestBodyWithImage_storesResizedVariants() throws IOException {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+        UserUpdateVM updateUser = createValidUserUpdateVM();
+        updateUser.setImage(new Base64Image(readFileToBase64("profile.png")));
+
+        ResponseEntity<UserVM> response = putUser(user.getId(), new HttpEntity<>(updateUser), UserVM.class);
+
+        String storedImageName = Objects.requireNonNull(response.getBody()).getImage();
+        for (int size : appConfiguration.getProfileImageSizes()) {
+            assertThat(blobStore.exists(appConfiguration.getProfileImagesFolder(),
+                    ProfileImageVariantService.variantName(storedImageName, size))).isTrue();
+        }
+    }
+
+
+    @Test
+    public void putUser_withImageThatDeclaresHugeDimensions_storesImageWithoutVariants() throws IOException {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+        UserUpdateVM updateUser = createValidUserUpdateVM();
+        updateUser.setImage(new Base64Image(Base64.getEncoder().encodeToString(createPngDeclaring(25000, 25000))));
+
+        ResponseEntity<UserVM> response = putUser(user.getId(), new HttpEntity<>(updateUser), UserVM.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        String storedImageName = Objects.requireNonNull(response.getBody()).getImage();
+        for (int size : appConfiguration.getProfileImageSizes()) {
+            assertThat(blobStore.exists(appConfiguration.getProfileImagesFolder(),
+                    ProfileImageVariantService.variantName(storedImageName, size))).isFalse();
+        }
+    }
+
+
+    @Test
+    public void putUser_withNewImageForUserWhoHasImage_removesVariantsOfOldImage() throws IOException {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+        UserUpdateVM updateUser = createValidUserUpdateVM();
+        updateUser.setImage(new Base64Image(readFileToBase64("profile.png")));
+        String oldImage = Objects.requireNonNull(putUser(user.getId(), new HttpEntity<>(updateUser), UserVM.class).getBody()).getImage();
+
+        updateUser.setImage(new Base64Image(readFileToBase64("test-jpg.jpg")));
+        putUser(user.getId(), new HttpEntity<>(updateUser), UserVM.class);
+
+        assertThat(blobStore.exists(appConfiguration.getProfileImagesFolder(),
+                ProfileImageVariantService.variantName(oldImage, 64))).isFalse();
+    }
+
+
+    @Test
+    public void postUserImage_withPngFileFromAuthorizedUser_receiveUserVMWithStoredImage() {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+
+        ResponseEntity<UserVM> response = postUserImage(user.getId(), "profile.png", UserVM.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        String storedImageName = Objects.requireNonNull(response.getBody()).getImage();
+        assertThat(blobStore.exists(appConfiguration.getProfileImagesFolder(), storedImageName)).isTrue();
+        assertThat(userRepository.findByUsername("user1").getImage()).isEqualTo(storedImageName);
+    }
+
+
+    @Test
+    public void postUserImage_withPngFile_storesSameBytesAsUploaded() throws IOException {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+
+        ResponseEntity<UserVM> response = postUserImage(user.getId(), "profile.png", UserVM.class);
+
+        String storedImageName = Objects.requireNonNull(response.getBody()).getImage();
+        try (InputStream in = blobStore.open(appConfiguration.getProfileImagesFolder(), storedImageName)) {
+            assertThat(IOUtils.toByteArray(in)).isEqualTo(FileUtils.readFileToByteArray(new ClassPathResource("profile.png").getFile()));
+        }
+    }
+
+
+    @Test
+    public void postUserImage_withGifFile_receiveValidationErrorForImage() {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+
+        ResponseEntity<ApiError> response = postUserImage(user.getId(), "test-gif.gif", ApiError.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(Objects.requireNonNull(response.getBody()).getValidationErrors().get("image"))
+                .isEqualTo("Only PNG and JPG files are allowed");
+    }
+
+
+    @Test
+    public void postUserImage_withoutFile_receiveBadRequest() {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("other", "value");
+
+        ResponseEntity<ApiError> response = testRestTemplate.postForEntity(API_1_0_USERS + "/" + user.getId() + "/image",
+                new HttpEntity<>(body, headers), ApiError.class);
 
-        File storedImage = new File(profilePicturePath);
-        assertThat(storedImage.exists()).isFalse();
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+
+    @Test
+    public void postUserImage_forAnotherUser_receiveForbidden() {
+        userService.save(createValidUser("user1"));
+        User another = userService.save(createValidUser("user2"));
+        authenticate("user1");
+
+        ResponseEntity<Object> response = postUserImage(another.getId(), "profile.png", Object.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+    }
+
+
+    @Test
+    public void postUserImage_whenUserHasImage_removesOldImage() {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+        String oldImage = Objects.requireNonNull(postUserImage(user.getId(), "profile.png", UserVM.class).getBody()).getImage();
+
+        postUserImage(user.getId(), "test-jpg.jpg", UserVM.class);
+
+        assertThat(blobStore.exists(appConfiguration.getProfileImagesFolder(), oldImage)).isFalse();
+    }
+
+
+
+
+
+    @Test
+    public void getUserByName_whenUserIsRequestedTwice_secondLookupServedFromCache() {
+        userService.save(createValidUser("user1"));
+        getUser("user1", Object.class);
+
+        long hitsBefore = getUsersCacheStats().hitCount();
+        getUser("user1", Object.class);
+        assertThat(getUsersCacheStats().hitCount()).isEqualTo(hitsBefore + 1);
+    }
+
+
+    @Test
+    public void getUserByName_whenUserIsUpdatedAfterBeingCached_receiveUpdatedDisplayName() {
+        User user = userService.save(createValidUser("user1"));
+        getUser("user1", Object.class);
+        authenticate(user.getUsername());
+
+        UserUpdateVM updateUser = createValidUserUpdateVM();
+        putUser(user.getId(), new HttpEntity<>(updateUser), Object.class);
+
+        final ResponseEntity<UserVM> response = getUser("user1", UserVM.class);
+        assertThat(Objects.requireNonNull(response.getBody()).getDisplayName()).isEqualTo(updateUser.getDisplayName());
     }
 
 
+    @Test
+    public void getByUsername_whenUserIsCached_returnsCopyThatDoesNotChangeCache() {
+        userService.save(createValidUser("user1"));
+        User first = userService.getByUsername("user1");
+        first.setDisplayName("changed-by-caller");
 
+        User second = userService.getByUsername("user1");
 
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getDisplayName()).isNotEqualTo("changed-by-caller");
+        assertThat(cacheManager.getCache("users").get("user1").get()).isInstanceOf(UserSnapshot.class);
+    }
 
     //************************************************************************************
     //************************ METHODS ***************************************************
     //************************************************************************************
+    private CacheStats getUsersCacheStats() {
+        return ((CaffeineCache) Objects.requireNonNull(cacheManager.getCache("users"))).getNativeCache().stats();
+    }
+
+
 
     // metodo generico para peticiones post
     public <T> ResponseEntity<T> postSignup(Object request, Class<T> response) {
@@ -682,6 +994,15 @@ public class UserControllerTest {
     }
 
 
+    public <T> ResponseEntity<T> postUserImage(long id, String fileName, Class<T> responseType) {
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("image", new ClassPathResource(fileName));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        return testRestTemplate.postForEntity(API_1_0_USERS + "/" + id + "/image", new HttpEntity<>(body, headers), responseType);
+    }
+
+
     //Authenticate
     private void authenticate(String username) {
         testRestTemplate.getRestTemplate()
@@ -696,6 +1017,19 @@ public class UserControllerTest {
         return updateUser;
     }
 
+    // un PNG de 1x1 con el ancho y alto del encabezado (IHDR) cambiados, el CRC se recalcula para que sea valido
+    private byte[] createPngDeclaring(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB), "png", out);
+        ByteBuffer png = ByteBuffer.wrap(out.toByteArray());
+        png.putInt(16, width);
+        png.putInt(20, height);
+        CRC32 crc = new CRC32();
+        crc.update(png.array(), 12, 17);
+        png.putInt(29, (int) crc.getValue());
+        return png.array();
+    }
+
     private String readFileToBase64(String fileName) throws IOException {
         ClassPathResource imageResource = new ClassPathResource(fileName);
         byte[] imageArr = FileUtils.readFileToByteArray(imageResource.getFile());
@@ -706,6 +1040,7 @@ public class UserControllerTest {
     // Clean directory
     @After
     public void cleanDirectory() throws IOException {
+        appConfiguration.setFileIoAsync(false);
         FileUtils.cleanDirectory(new File(appConfiguration.getFullProfileImagePath()));
         FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
     }